@@ -18,6 +18,7 @@ import net.silentchaos512.scalinghealth.command.CommandRecalculate;
 import net.silentchaos512.scalinghealth.command.CommandScalingHealth;
 import net.silentchaos512.scalinghealth.init.ModItems;
 import net.silentchaos512.scalinghealth.proxy.ScalingHealthCommonProxy;
+import net.silentchaos512.scalinghealth.utils.TraceBuffer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -81,6 +82,11 @@ public class ScalingHealth implements IModBase {
         event.registerServerCommand(new CommandRecalculate());
     }
 
+    @EventHandler
+    public void onServerStopping(FMLServerStoppingEvent event) {
+        TraceBuffer.INSTANCE.flush();
+    }
+
     @EventHandler
     public void onServerStarted(FMLServerStartedEvent event) {
         MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
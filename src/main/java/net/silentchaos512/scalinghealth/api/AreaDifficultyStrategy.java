@@ -0,0 +1,97 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.api;
+
+import java.util.Set;
+
+/**
+ * Calculates the raw area difficulty for a position. Clamping, the group bonus and dimension
+ * factors are applied afterwards by Scaling Health, so strategies only need to produce the base
+ * value. Strategies can be registered with
+ * {@link ScalingHealthAPI#registerAreaDifficultyStrategy(String, AreaDifficultyStrategy)} and
+ * selected with the "Custom Area Mode" config.
+ * <p>
+ * Only the inputs returned by {@link #getInputs()} are gathered before
+ * {@link #getDifficulty(Context)} is called, so strategies should declare exactly what they use.
+ * Strategies are also run on other threads when querying a
+ * {@link net.silentchaos512.scalinghealth.world.DifficultySnapshot}, so they should only read
+ * the context and not the world.
+ */
+public interface AreaDifficultyStrategy {
+    enum Input {
+        /**
+         * Players within the search radius, and their difficulty.
+         */
+        PLAYERS,
+        /**
+         * The world spawn point.
+         */
+        SPAWN_POINT,
+        /**
+         * The server-wide (world) difficulty.
+         */
+        WORLD_DATA
+    }
+
+    /**
+     * The inputs this strategy reads from the context. This should return the same (preferably
+     * constant) set every time.
+     */
+    Set<Input> getInputs();
+
+    /**
+     * Calculates the area difficulty. The context is reused between calls and must not be kept.
+     * Strategies that use {@link Input#PLAYERS} are not called when there are no players in range.
+     */
+    double getDifficulty(Context context);
+
+    /**
+     * The values a strategy can read. Getters for inputs that were not requested return
+     * unspecified values.
+     */
+    interface Context {
+        int getX();
+
+        int getY();
+
+        int getZ();
+
+        /**
+         * @return The search radius, or {@link Integer#MAX_VALUE} if range is unlimited.
+         */
+        int getSearchRadius();
+
+        int getPlayerCount();
+
+        double getPlayerX(int index);
+
+        double getPlayerZ(int index);
+
+        /**
+         * @return The player's difficulty, or {@link Double#NaN} if the player has no data.
+         */
+        double getPlayerDifficulty(int index);
+
+        int getSpawnX();
+
+        int getSpawnZ();
+
+        double getWorldDifficulty();
+    }
+}
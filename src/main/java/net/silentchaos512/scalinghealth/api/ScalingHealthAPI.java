@@ -25,12 +25,19 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.potion.Potion;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
-import net.silentchaos512.scalinghealth.config.Config;
+import net.silentchaos512.scalinghealth.capability.MobState;
 import net.silentchaos512.scalinghealth.event.BlightHandler;
 import net.silentchaos512.scalinghealth.event.DifficultyHandler;
+import net.silentchaos512.scalinghealth.lib.AreaDifficultyEvaluator;
+import net.silentchaos512.scalinghealth.lib.AreaDifficultyStrategies;
+import net.silentchaos512.scalinghealth.utils.BlightEffectList;
 import net.silentchaos512.scalinghealth.utils.SHPlayerDataHandler;
 import net.silentchaos512.scalinghealth.utils.SHPlayerDataHandler.PlayerData;
 import net.silentchaos512.scalinghealth.utils.StackProducer;
+import net.silentchaos512.scalinghealth.world.DifficultySnapshot;
+
+import javax.annotation.Nullable;
+import java.util.UUID;
 
 @SuppressWarnings("unused")
 public final class ScalingHealthAPI {
@@ -39,7 +46,11 @@ public final class ScalingHealthAPI {
     }
 
     public static void spawnWithoutDifficulty(World world, EntityLivingBase entity) {
-        entity.getEntityData().setShort(DifficultyHandler.NBT_ENTITY_DIFFICULTY, (short) -1);
+        MobState state = MobState.get(entity);
+        if (state != null) {
+            state.setProcessed(true);
+            state.setDifficulty(0);
+        }
         world.spawnEntity(entity);
     }
 
@@ -53,7 +64,43 @@ public final class ScalingHealthAPI {
      * @return The area difficulty.
      */
     public static double getAreaDifficulty(World world, BlockPos pos) {
-        return Config.Difficulty.AREA_DIFFICULTY_MODE.getAreaDifficulty(world, pos);
+        return AreaDifficultyEvaluator.getAreaDifficulty(AreaDifficultyStrategies.getActive(), world, pos);
+    }
+
+    /**
+     * Gets the area difficulty for many positions at once. This is much faster than calling
+     * {@link #getAreaDifficulty(World, BlockPos)} in a loop, since everything that does not
+     * depend on position is only looked up once. On the server, very large inputs (see
+     * {@link DifficultySnapshot#PARALLEL_THRESHOLD}) are evaluated in parallel from the latest
+     * difficulty snapshot, so values may be up to a tick old.
+     *
+     * @param positions Positions packed with {@link BlockPos#toLong()}
+     * @param out       Receives the area difficulty of each position. Must be at least as long as
+     *                  {@code positions}.
+     */
+    public static void getAreaDifficulty(World world, long[] positions, double[] out) {
+        if (!world.isRemote && positions.length >= DifficultySnapshot.PARALLEL_THRESHOLD) {
+            DifficultySnapshot snapshot = DifficultySnapshot.get(world.provider.getDimension());
+            if (snapshot != null) {
+                snapshot.getAreaDifficulty(positions, out);
+                return;
+            }
+        }
+
+        AreaDifficultyEvaluator.get(world).evaluate(AreaDifficultyStrategies.getActive(), world, positions, out, true, true);
+    }
+
+    /**
+     * Registers a new way of calculating area difficulty. Players can select it by setting the
+     * "Custom Area Mode" config to the name. Names are not case-sensitive, and the built-in modes
+     * are registered under their enum names. This should be called during mod initialization.
+     *
+     * @param name     The name of the strategy, preferably prefixed with your mod ID.
+     * @param strategy The strategy.
+     * @throws IllegalArgumentException if a strategy with the name is already registered
+     */
+    public static void registerAreaDifficultyStrategy(String name, AreaDifficultyStrategy strategy) {
+        AreaDifficultyStrategies.register(name, strategy);
     }
 
     /**
@@ -70,6 +117,39 @@ public final class ScalingHealthAPI {
         return data.getDifficulty();
     }
 
+    /**
+     * Gets the latest difficulty snapshot for a dimension. Unlike most methods here, this (and
+     * the snapshot itself) is safe to use from any thread.
+     *
+     * @return The snapshot, or null if the dimension is not loaded on the server.
+     */
+    @Nullable
+    public static DifficultySnapshot getDifficultySnapshot(int dimension) {
+        return DifficultySnapshot.get(dimension);
+    }
+
+    /**
+     * Gets the area difficulty for the given position from the latest snapshot. Safe to call
+     * from any thread, but the value may be up to a tick old.
+     *
+     * @return The area difficulty, or Double.NaN if the dimension has no snapshot.
+     */
+    public static double getSnapshotAreaDifficulty(int dimension, BlockPos pos) {
+        DifficultySnapshot snapshot = DifficultySnapshot.get(dimension);
+        return snapshot != null ? snapshot.getAreaDifficulty(pos.getX(), pos.getY(), pos.getZ()) : Double.NaN;
+    }
+
+    /**
+     * Gets a player's difficulty from the latest snapshot of the dimension they are in. Safe to
+     * call from any thread, but the value may be up to a tick old.
+     *
+     * @return The player's difficulty, or Double.NaN if the player is not in that dimension.
+     */
+    public static double getSnapshotPlayerDifficulty(int dimension, UUID playerId) {
+        DifficultySnapshot snapshot = DifficultySnapshot.get(dimension);
+        return snapshot != null ? snapshot.getPlayerDifficulty(playerId) : Double.NaN;
+    }
+
     /**
      * Adds difficulty to the player. The player's difficulty will be clamped to valid values.
      */
@@ -82,14 +162,14 @@ public final class ScalingHealthAPI {
 
     /**
      * For players, gets the player's difficulty. For other entities, it gets the difficulty they
-     * spawned with. Non-player difficulty is stored as a short, so it will always be a whole
-     * number.
+     * spawned with, or zero if they have not been processed or were spawned without difficulty.
      */
     public static double getEntityDifficulty(EntityLivingBase entity) {
         if (entity instanceof EntityPlayer)
             return getPlayerDifficulty((EntityPlayer) entity);
 
-        return entity.getEntityData().getShort(DifficultyHandler.NBT_ENTITY_DIFFICULTY);
+        MobState state = MobState.get(entity);
+        return state != null ? state.getDifficulty() : 0;
     }
 
     // **************************************************************************
@@ -114,28 +194,21 @@ public final class ScalingHealthAPI {
      *                 exponentially less common.
      */
     public static void addBlightEquipment(StackProducer producer, EntityEquipmentSlot slot, int tier) {
-        switch (slot) {
-            case CHEST:
-                DifficultyHandler.INSTANCE.mapChestplates.put(producer, tier);
-                break;
-            case FEET:
-                DifficultyHandler.INSTANCE.mapBoots.put(producer, tier);
-                break;
-            case HEAD:
-                DifficultyHandler.INSTANCE.mapHelmets.put(producer, tier);
-                break;
-            case LEGS:
-                DifficultyHandler.INSTANCE.mapLeggings.put(producer, tier);
-                break;
-            case MAINHAND:
-                DifficultyHandler.INSTANCE.mapMainhands.put(producer, tier);
-                break;
-            case OFFHAND:
-                DifficultyHandler.INSTANCE.mapOffhands.put(producer, tier);
-                break;
-            default:
-                break;
-        }
+        addBlightEquipment(producer, slot, tier, 1);
+    }
+
+    /**
+     * Adds equipment that blights can randomly spawn with, with a weight relative to the other
+     * equipment in the same slot and tier. Equipment added without a weight has a weight of 1.
+     *
+     * @param producer The weapon/armor/whatever producer. The stack it returns is copied before
+     *                 being given to a blight.
+     * @param slot     The slot the item belongs in.
+     * @param tier     The tier of the item, from 0 to 4.
+     * @param weight   How likely the item is to be picked. Must be positive.
+     */
+    public static void addBlightEquipment(StackProducer producer, EntityEquipmentSlot slot, int tier, double weight) {
+        DifficultyHandler.INSTANCE.blightLoadout.add(producer, slot, tier, weight);
     }
 
     /**
@@ -166,4 +239,29 @@ public final class ScalingHealthAPI {
     public static void addMobSpawnPotion(Potion potion, int cost, int amplifier) {
         DifficultyHandler.INSTANCE.potionMap.put(potion, cost, amplifier);
     }
+
+    /**
+     * Adds a potion effect that any mob can spawn with, with a weight relative to other effects.
+     *
+     * @param potion    The potion.
+     * @param cost      The amount of "difficulty" the potion requires. See
+     *                  {@link #addMobSpawnPotion(Potion, int, int)}.
+     * @param amplifier The amplifier on the potion effect. An amplifier of 0 means level 1.
+     * @param weight    How likely the effect is to be picked compared to others the mob can afford.
+     *                  Effects added without a weight have a weight of 1.
+     */
+    public static void addMobSpawnPotion(Potion potion, int cost, int amplifier, int weight) {
+        DifficultyHandler.INSTANCE.potionMap.put(potion, cost, amplifier, weight);
+    }
+
+    /**
+     * Adds a potion effect that all blights have. Replaces any effect on the same potion from the
+     * config.
+     *
+     * @param potion    The potion.
+     * @param amplifier The amplifier on the potion effect. An amplifier of 0 means level 1.
+     */
+    public static void addBlightPotion(Potion potion, int amplifier) {
+        BlightEffectList.INSTANCE.add(potion, amplifier);
+    }
 }
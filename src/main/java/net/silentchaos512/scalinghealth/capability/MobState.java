@@ -0,0 +1,220 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.capability;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityLiving;
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityInject;
+import net.minecraftforge.common.capabilities.CapabilityManager;
+import net.minecraftforge.common.capabilities.ICapabilitySerializable;
+import net.minecraftforge.event.AttachCapabilitiesEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.silentchaos512.scalinghealth.ScalingHealth;
+
+import javax.annotation.Nullable;
+
+/**
+ * Scaling Health's per-mob state: whether the mob has been processed, the difficulty it spawned
+ * with and whether it is a blight. Attached to every {@link EntityLiving}, so checks that run
+ * every tick are plain field reads instead of NBT lookups.
+ * <p>
+ * Mobs saved by older versions stored this in the entity's custom data. Those tags are moved into
+ * the capability the first time it is accessed.
+ */
+public class MobState {
+    @CapabilityInject(MobState.class)
+    public static Capability<MobState> CAPABILITY = null;
+
+    public static final ResourceLocation NAME = new ResourceLocation(ScalingHealth.MOD_ID_LOWER, "mob_state");
+
+    // Tags used before the capability existed
+    private static final String LEGACY_NBT_DIFFICULTY = ScalingHealth.RESOURCE_PREFIX + "difficulty";
+    private static final String LEGACY_NBT_BLIGHT = ScalingHealth.MOD_ID_OLD + ".IsBlight";
+
+    private static final String NBT_FLAGS = "f";
+    private static final String NBT_DIFFICULTY = "d";
+    private static final int FLAG_PROCESSED = 1;
+    private static final int FLAG_BLIGHT = 2;
+
+    private boolean processed;
+    private boolean blight;
+    private float difficulty;
+    private boolean migrated;
+    // Not saved, so effects are checked again soon after loading
+    private long nextEffectRefresh;
+    // Not saved, the spawn queue is rebuilt as mobs join the world
+    private boolean spawnQueued;
+
+    public static void register() {
+        CapabilityManager.INSTANCE.register(MobState.class, new Storage(), MobState::new);
+    }
+
+    /**
+     * Gets the mob state of an entity, migrating legacy NBT if needed.
+     *
+     * @return The mob state, or null if the entity is not an {@link EntityLiving}
+     */
+    @Nullable
+    public static MobState get(@Nullable Entity entity) {
+        if (!(entity instanceof EntityLiving) || CAPABILITY == null)
+            return null;
+
+        MobState state = entity.getCapability(CAPABILITY, null);
+        if (state != null && !state.migrated)
+            state.migrateLegacyData(entity);
+        return state;
+    }
+
+    public boolean isProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(boolean processed) {
+        this.processed = processed;
+    }
+
+    public boolean isBlight() {
+        return blight;
+    }
+
+    public void setBlight(boolean blight) {
+        this.blight = blight;
+    }
+
+    /**
+     * The difficulty the mob spawned with (after blight multipliers). Zero for mobs that have not
+     * been processed, or were spawned without difficulty.
+     */
+    public float getDifficulty() {
+        return difficulty;
+    }
+
+    public void setDifficulty(float difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * The world time at which a blight's potion effects should next be checked.
+     */
+    public long getNextEffectRefresh() {
+        return nextEffectRefresh;
+    }
+
+    public void setNextEffectRefresh(long nextEffectRefresh) {
+        this.nextEffectRefresh = nextEffectRefresh;
+    }
+
+    /**
+     * Whether the mob is waiting in the {@link net.silentchaos512.scalinghealth.event.SpawnProcessingQueue}.
+     */
+    public boolean isSpawnQueued() {
+        return spawnQueued;
+    }
+
+    public void setSpawnQueued(boolean spawnQueued) {
+        this.spawnQueued = spawnQueued;
+    }
+
+    private void migrateLegacyData(Entity entity) {
+        migrated = true;
+
+        NBTTagCompound tags = entity.getEntityData();
+        if (tags.hasKey(LEGACY_NBT_DIFFICULTY)) {
+            // -1 meant processed without difficulty
+            short value = tags.getShort(LEGACY_NBT_DIFFICULTY);
+            processed = value != 0;
+            difficulty = Math.max(0, value);
+            tags.removeTag(LEGACY_NBT_DIFFICULTY);
+        }
+        if (tags.hasKey(LEGACY_NBT_BLIGHT)) {
+            blight = tags.getBoolean(LEGACY_NBT_BLIGHT);
+            tags.removeTag(LEGACY_NBT_BLIGHT);
+        }
+    }
+
+    public NBTTagCompound writeToNBT(NBTTagCompound tags) {
+        int flags = (processed ? FLAG_PROCESSED : 0) | (blight ? FLAG_BLIGHT : 0);
+        tags.setByte(NBT_FLAGS, (byte) flags);
+        if (difficulty != 0)
+            tags.setFloat(NBT_DIFFICULTY, difficulty);
+        return tags;
+    }
+
+    public void readFromNBT(NBTTagCompound tags) {
+        int flags = tags.getByte(NBT_FLAGS);
+        processed = (flags & FLAG_PROCESSED) != 0;
+        blight = (flags & FLAG_BLIGHT) != 0;
+        difficulty = tags.getFloat(NBT_DIFFICULTY);
+        // Saved in the new format, so nothing left to migrate
+        migrated = true;
+    }
+
+    public static class EventHandler {
+        @SubscribeEvent
+        public void onAttachCapabilities(AttachCapabilitiesEvent<Entity> event) {
+            if (event.getObject() instanceof EntityLiving) {
+                event.addCapability(NAME, new Provider());
+            }
+        }
+    }
+
+    private static class Provider implements ICapabilitySerializable<NBTTagCompound> {
+        private final MobState instance = new MobState();
+
+        @Override
+        public boolean hasCapability(Capability<?> capability, @Nullable EnumFacing facing) {
+            return capability == CAPABILITY;
+        }
+
+        @Nullable
+        @Override
+        public <T> T getCapability(Capability<T> capability, @Nullable EnumFacing facing) {
+            return capability == CAPABILITY ? CAPABILITY.cast(instance) : null;
+        }
+
+        @Override
+        public NBTTagCompound serializeNBT() {
+            return instance.writeToNBT(new NBTTagCompound());
+        }
+
+        @Override
+        public void deserializeNBT(NBTTagCompound nbt) {
+            instance.readFromNBT(nbt);
+        }
+    }
+
+    private static class Storage implements Capability.IStorage<MobState> {
+        @Nullable
+        @Override
+        public NBTBase writeNBT(Capability<MobState> capability, MobState instance, EnumFacing side) {
+            return instance.writeToNBT(new NBTTagCompound());
+        }
+
+        @Override
+        public void readNBT(Capability<MobState> capability, MobState instance, EnumFacing side, NBTBase nbt) {
+            if (nbt instanceof NBTTagCompound)
+                instance.readFromNBT((NBTTagCompound) nbt);
+        }
+    }
+}
@@ -29,6 +29,7 @@ import net.minecraftforge.client.event.RenderGameOverlayEvent.ElementType;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.silentchaos512.lib.event.ClientTicks;
 import net.silentchaos512.scalinghealth.ScalingHealth;
+import net.silentchaos512.scalinghealth.api.ScalingHealthAPI;
 import net.silentchaos512.scalinghealth.config.Config;
 import net.silentchaos512.scalinghealth.lib.EnumAreaDifficultyMode;
 import net.silentchaos512.scalinghealth.utils.SHPlayerDataHandler;
@@ -64,7 +65,7 @@ public class DifficultyDisplayHandler extends Gui {
             return;
 
         int difficulty = (int) data.getDifficulty();
-        int areaDifficultyUnclamped = (int) Config.Difficulty.AREA_DIFFICULTY_MODE.getAreaDifficulty(player.world, player.getPosition());
+        int areaDifficultyUnclamped = (int) ScalingHealthAPI.getAreaDifficulty(player.world, player.getPosition());
         int areaDifficulty = MathHelper.clamp(areaDifficultyUnclamped, 0, (int) Config.Difficulty.maxValue);
         if (Config.Difficulty.AREA_DIFFICULTY_MODE == EnumAreaDifficultyMode.SERVER_WIDE) {
             difficulty = areaDifficulty;
@@ -0,0 +1,46 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.client.render.entity;
+
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraftforge.client.event.RenderLivingEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.silentchaos512.scalinghealth.event.BlightHandler;
+import net.silentchaos512.scalinghealth.world.BlightRegistry;
+
+/**
+ * Draws blight fires as part of the blight's own render pass, for servers using "Client-Side
+ * Fire". Blights that still have a fire entity (the server has the option off, or the fire was
+ * spawned before it was turned on) are left to {@link RenderBlightFire}.
+ */
+public final class BlightFireRenderHandler {
+    public static final BlightFireRenderHandler INSTANCE = new BlightFireRenderHandler();
+
+    private BlightFireRenderHandler() {}
+
+    @SubscribeEvent
+    public void onRenderLiving(RenderLivingEvent.Post<EntityLivingBase> event) {
+        EntityLivingBase entity = event.getEntity();
+        if (!BlightHandler.isBlight(entity) || BlightRegistry.get(entity.world).getFire(entity) != null)
+            return;
+
+        RenderBlightFire.renderFire(event.getRenderer().getRenderManager(), entity,
+                event.getX(), event.getY() + entity.height / 1.5, event.getZ());
+    }
+}
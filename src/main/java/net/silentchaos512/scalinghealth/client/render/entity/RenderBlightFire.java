@@ -40,8 +40,8 @@ import javax.annotation.Nonnull;
 public final class RenderBlightFire extends Render<EntityBlightFire> {
     private static final float FIRE_SCALE = 1.8F;
 
-    private final ResourceLocation TEXTURE = new ResourceLocation(ScalingHealth.MOD_ID_LOWER, "textures/entity/blightfire.png");
-    private final ResourceLocation TEXTURE_GRAY = new ResourceLocation(ScalingHealth.MOD_ID_LOWER, "textures/entity/blightfire_gray.png");
+    private static final ResourceLocation TEXTURE = new ResourceLocation(ScalingHealth.MOD_ID_LOWER, "textures/entity/blightfire.png");
+    private static final ResourceLocation TEXTURE_GRAY = new ResourceLocation(ScalingHealth.MOD_ID_LOWER, "textures/entity/blightfire_gray.png");
 
     private RenderBlightFire(RenderManager renderManager) {
         super(renderManager);
@@ -50,6 +50,10 @@ public final class RenderBlightFire extends Render<EntityBlightFire> {
     @Nonnull
     @Override
     protected ResourceLocation getEntityTexture(EntityBlightFire entity) {
+        return getTexture();
+    }
+
+    private static ResourceLocation getTexture() {
         return ModuleAprilTricks.instance.isRightDay() && ModuleAprilTricks.instance.isEnabled()
                 ? TEXTURE_GRAY : TEXTURE;
     }
@@ -77,6 +81,15 @@ public final class RenderBlightFire extends Render<EntityBlightFire> {
         if (parent == null)
             return;
 
+        renderFire(renderManager, parent, x, y, z);
+    }
+
+    /**
+     * Renders a blight fire on {@code parent}. Also used to draw the fire from the parent's render
+     * pass when there is no fire entity (see {@link BlightFireRenderHandler}). The position is
+     * where the fire entity would be, two thirds of the way up the parent.
+     */
+    static void renderFire(RenderManager renderManager, EntityLivingBase parent, double x, double y, double z) {
         GlStateManager.disableLighting();
         GlStateManager.pushMatrix();
         GlStateManager.translate(x, y - parent.height + 0.5, z);
@@ -90,7 +103,7 @@ public final class RenderBlightFire extends Render<EntityBlightFire> {
         float f3 = parent.height / f;
         float f4 = (float) (parent.posY - parent.getEntityBoundingBox().minY);
 
-        GlStateManager.rotate(-this.renderManager.playerViewY, 0.0F, 1.0F, 0.0F);
+        GlStateManager.rotate(-renderManager.playerViewY, 0.0F, 1.0F, 0.0F);
         GlStateManager.translate(0.0F, 0.0F, (float) ((int) f3) * 0.02F);
 
         if (ModuleAprilTricks.instance.isRightDay() && ModuleAprilTricks.instance.isEnabled()) {
@@ -108,7 +121,7 @@ public final class RenderBlightFire extends Render<EntityBlightFire> {
         int i = 0;
 
         vertexbuffer.begin(7, DefaultVertexFormats.POSITION_TEX);
-        this.bindTexture(getEntityTexture(fire));
+        renderManager.renderEngine.bindTexture(getTexture());
 
         while (f3 > 0.0F) {
             boolean flag = i % 2 == 0;
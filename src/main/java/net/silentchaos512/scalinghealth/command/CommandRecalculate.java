@@ -8,15 +8,11 @@ import net.minecraft.util.text.ITextComponent;
 import net.minecraft.util.text.TextComponentTranslation;
 import net.minecraft.util.text.TextFormatting;
 import net.minecraft.world.World;
-import net.minecraftforge.fml.common.network.NetworkRegistry;
-import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.silentchaos512.lib.command.CommandBaseSL;
 import net.silentchaos512.scalinghealth.ScalingHealth;
 import net.silentchaos512.scalinghealth.api.ScalingHealthAPI;
 import net.silentchaos512.scalinghealth.event.BlightHandler;
 import net.silentchaos512.scalinghealth.event.DifficultyHandler;
-import net.silentchaos512.scalinghealth.network.NetworkHandler;
-import net.silentchaos512.scalinghealth.network.message.MessageMarkBlight;
 import net.silentchaos512.scalinghealth.utils.ModifierHandler;
 
 public class CommandRecalculate extends CommandBaseSL {
@@ -66,12 +62,6 @@ public class CommandRecalculate extends CommandBaseSL {
                 double newMaxHealth = ModifierHandler.getHealthModifier(entity);
                 double newAttackDamage = ModifierHandler.getDamageModifier(entity);
 
-                // Update blight status on clients
-                if (oldBlightFlag != newBlightFlag) {
-                    IMessage message = new MessageMarkBlight(entity, newBlightFlag);
-                    NetworkHandler.INSTANCE.sendToAllAround(message, new NetworkRegistry.TargetPoint(entity.dimension, entity.posX, entity.posY, entity.posZ, 128));
-                }
-
                 ScalingHealth.LOGGER.info("Recalculate {}: blight {} -> {}; difficulty {} -> {}; max health {} -> {}; attack damage {} -> {}",
                         entity.getName(), oldBlightFlag, newBlightFlag, oldDifficulty, newDifficulty, oldMaxHealth, newMaxHealth, oldAttackDamage, newAttackDamage);
             }
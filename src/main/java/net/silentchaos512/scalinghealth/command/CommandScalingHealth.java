@@ -22,6 +22,7 @@ import com.google.common.collect.ImmutableList;
 import net.minecraft.command.CommandException;
 import net.minecraft.command.ICommandSender;
 import net.minecraft.command.PlayerNotFoundException;
+import net.minecraft.entity.EntityLivingBase;
 import net.minecraft.entity.SharedMonsterAttributes;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.server.MinecraftServer;
@@ -30,19 +31,25 @@ import net.minecraft.util.text.TextComponentString;
 import net.minecraft.util.text.TextComponentTranslation;
 import net.minecraft.util.text.TextFormatting;
 import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
 import net.silentchaos512.lib.command.CommandBaseSL;
 import net.silentchaos512.scalinghealth.ScalingHealth;
 import net.silentchaos512.scalinghealth.config.Config;
 import net.silentchaos512.scalinghealth.utils.SHPlayerDataHandler;
+import net.silentchaos512.scalinghealth.utils.TraceBuffer;
+import net.silentchaos512.scalinghealth.utils.TraceDecoder;
 import net.silentchaos512.scalinghealth.utils.SHPlayerDataHandler.PlayerData;
+import net.silentchaos512.scalinghealth.world.BlightRegistry;
 import net.silentchaos512.scalinghealth.world.ScalingHealthSavedData;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.*;
 import java.util.List;
 
 public class CommandScalingHealth extends CommandBaseSL {
     private static final String NUMFORMAT = "%.2f";
+    private static final int MAX_BLIGHTS_LISTED = 20;
 
     @Override
     public String getName() {
@@ -65,6 +72,14 @@ public class CommandScalingHealth extends CommandBaseSL {
             executeConfigReload(sender);
             return;
         }
+        if (args.length == 2 && "trace".equals(args[0]) && "dump".equals(args[1])) {
+            executeTraceDump(sender);
+            return;
+        }
+        if (args.length == 1 && "blights".equals(args[0])) {
+            executeBlights(server, sender);
+            return;
+        }
         if (args.length < 2) {
             tell(sender, getUsage(sender), false);
             return;
@@ -91,6 +106,45 @@ public class CommandScalingHealth extends CommandBaseSL {
             tell(sender, getUsage(sender), false);
     }
 
+    private static void executeTraceDump(ICommandSender sender) {
+        TraceBuffer.INSTANCE.flush();
+        if (!TraceBuffer.FILE.exists()) {
+            sender.sendMessage(new TextComponentString(TextFormatting.RED + "No trace file. Enable \"Trace Spawns And Damage\" in the debug config."));
+            return;
+        }
+
+        File output = new File(TraceBuffer.FILE.getParentFile(), "scalinghealth-trace.txt");
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(output)))) {
+            int count = TraceDecoder.decode(TraceBuffer.FILE, writer);
+            sender.sendMessage(new TextComponentString("Wrote " + count + " trace records to " + output.getPath()));
+        } catch (IOException ex) {
+            ScalingHealth.logHelper.warn(ex, "Failed to dump trace file");
+            sender.sendMessage(new TextComponentString(TextFormatting.RED + "Failed to dump trace file: " + ex.getMessage()));
+        }
+    }
+
+    private static void executeBlights(MinecraftServer server, ICommandSender sender) {
+        int total = 0;
+        for (WorldServer world : server.worlds) {
+            int count = BlightRegistry.get(world).getBlights().size();
+            if (count > 0)
+                sender.sendMessage(new TextComponentString("Dimension " + world.provider.getDimension() + ": " + count + " blights"));
+            total += count;
+        }
+        sender.sendMessage(new TextComponentString(total + " blights loaded"));
+
+        // List the ones in the sender's world
+        List<EntityLivingBase> blights = BlightRegistry.get(sender.getEntityWorld()).getBlights();
+        for (int i = 0; i < blights.size() && i < MAX_BLIGHTS_LISTED; ++i) {
+            EntityLivingBase blight = blights.get(i);
+            BlockPos pos = blight.getPosition();
+            sender.sendMessage(new TextComponentString(String.format("  %s (%d, %d, %d) " + NUMFORMAT + "/" + NUMFORMAT + " HP",
+                    blight.getName(), pos.getX(), pos.getY(), pos.getZ(), blight.getHealth(), blight.getMaxHealth())));
+        }
+        if (blights.size() > MAX_BLIGHTS_LISTED)
+            sender.sendMessage(new TextComponentString("  ... and " + (blights.size() - MAX_BLIGHTS_LISTED) + " more"));
+    }
+
     private static List<EntityPlayerMP> getTargetPlayers(MinecraftServer server, ICommandSender sender, boolean isGet, String[] args) throws PlayerNotFoundException, CommandException {
         int index = isGet ? 2 : 3;
         return args.length < index + 1
@@ -284,7 +338,9 @@ public class CommandScalingHealth extends CommandBaseSL {
     @Override
     public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, @Nullable BlockPos pos) {
         if (args.length == 1)
-            return getListOfStringsMatchingLastWord(args, "difficulty", "health", "world_difficulty");
+            return getListOfStringsMatchingLastWord(args, "difficulty", "health", "world_difficulty", "trace", "blights");
+        else if (args.length == 2 && "trace".equals(args[0]))
+            return getListOfStringsMatchingLastWord(args, "dump");
         else if (args.length == 2)
             return getListOfStringsMatchingLastWord(args, "get", "set", "add", "sub");
         else if (isUsernameIndex(args, args.length))
@@ -37,11 +37,15 @@ import net.silentchaos512.scalinghealth.event.DamageScaling;
 import net.silentchaos512.scalinghealth.lib.EnumAreaDifficultyMode;
 import net.silentchaos512.scalinghealth.lib.EnumHealthModMode;
 import net.silentchaos512.scalinghealth.lib.EnumResetTime;
+import net.silentchaos512.scalinghealth.lib.MobStatRoller;
 import net.silentchaos512.scalinghealth.lib.SimpleExpression;
 import net.silentchaos512.scalinghealth.lib.module.ModuleAprilTricks;
+import net.silentchaos512.scalinghealth.utils.BlightEffectList;
 import net.silentchaos512.scalinghealth.utils.EntityDifficultyChangeList;
 import net.silentchaos512.scalinghealth.utils.EntityMatchList;
+import net.silentchaos512.scalinghealth.utils.EntityPolicy;
 import net.silentchaos512.scalinghealth.utils.PlayerMatchList;
+import net.silentchaos512.scalinghealth.world.AreaDifficultyCache;
 
 import java.io.File;
 import java.lang.reflect.Field;
@@ -74,6 +78,13 @@ public class Config extends ConfigBaseNew {
         @ConfigOption.BooleanDefault(true)
         @ConfigOption.Comment("If debug mode is on, this will log details of damage done to players.")
         public static boolean logPlayerDamage;
+
+        @ConfigOption(name = "Trace Spawns And Damage", category = CAT_DEBUG)
+        @ConfigOption.BooleanDefault(false)
+        @ConfigOption.Comment("Record mob spawns and scaled damage to a compact binary file (logs/scalinghealth-trace.bin)." +
+                " Much cheaper than the log options and does not require debug mode. Use \"/scalinghealth trace dump\"" +
+                " to write a readable copy.")
+        public static boolean trace;
     }
 
     // TODO: 1.13 - Split client category into client.hearts and client.difficulty
@@ -318,6 +329,20 @@ public class Config extends ConfigBaseNew {
                 + " it has been given extra health and damage. So entering 1 won't guarantee potion"
                 + " effects.")
         public static float passivePotionChance;
+        @ConfigOption(name = "Spawn Queue Enabled", category = CAT_MOB)
+        @ConfigOption.BooleanDefault(true)
+        @ConfigOption.Comment("If true, newly spawned mobs are given their difficulty bonuses over several ticks, closest" +
+                " to players first, instead of all at once. This smooths out lag spikes from spawn waves and chunk loads.")
+        public static boolean spawnQueueEnabled;
+        @ConfigOption(name = "Spawn Queue Max Per Tick", category = CAT_MOB)
+        @ConfigOption.RangeInt(value = 64, min = 1, max = 10000)
+        @ConfigOption.Comment("The maximum number of queued mobs to process each tick.")
+        public static int spawnQueueMaxPerTick;
+        @ConfigOption(name = "Spawn Queue Time Budget", category = CAT_MOB)
+        @ConfigOption.RangeInt(value = 2000, min = 100, max = 50000)
+        @ConfigOption.Comment("The maximum time (in microseconds) to spend processing queued mobs each tick. At least" +
+                " one mob is always processed.")
+        public static int spawnQueueTimeBudget;
         @ConfigOption(name = "XP Boost", category = CAT_MOB)
         @ConfigOption.RangeFloat(value = 0.01f, min = 0, max = 1)
         @ConfigOption.Comment("Additional XP (as percentage) per point of difficulty. For example, if this is 0.01, a"
@@ -372,6 +397,12 @@ public class Config extends ConfigBaseNew {
             @ConfigOption.BooleanDefault(false)
             @ConfigOption.Comment("If true, every mob that can be a blight will be one 100% of the time.")
             public static boolean blightAlways;
+            @ConfigOption(name = "Client-Side Fire", category = CAT_MOB_BLIGHT)
+            @ConfigOption.BooleanDefault(false)
+            @ConfigOption.Comment("If true, blight fires are drawn by clients along with the blight, instead of" +
+                    " being separate entities. This saves the server an entity for every blight. \"Fire Rides" +
+                    " Blights\" does nothing when this is enabled.")
+            public static boolean clientSideFire;
             @ConfigOption(name = "Blight Chance Multiplier", category = CAT_MOB_BLIGHT)
             @ConfigOption.RangeFloat(value = 0.0625f, min = 0)
             @ConfigOption.Comment("Determines the chance of a mob spawning as a blight. Formula is "
@@ -406,6 +437,11 @@ public class Config extends ConfigBaseNew {
             @ConfigOption.BooleanDefault(false)
             @ConfigOption.Comment("Should blights have the invisibility potion effect?")
             public static boolean invisibility;
+            @ConfigOption(name = "Max Blights Per Region", category = CAT_MOB_BLIGHT)
+            @ConfigOption.RangeInt(value = 0, min = 0)
+            @ConfigOption.Comment("The most blights that can be alive at once in one region (see \"Region Size\")." +
+                    " Mobs spawning in a full region will not become blights. Set to 0 for no limit.")
+            public static int maxPerRegion;
             @ConfigOption(name = "Notify Players on Death", category = CAT_MOB_BLIGHT)
             @ConfigOption.BooleanDefault(true)
             @ConfigOption.Comment("Let all players know when a blight dies in chat.")
@@ -416,6 +452,15 @@ public class Config extends ConfigBaseNew {
                     " refreshed frequently, so this value doesn't matter in most cases... except for the lingering" +
                     " potion effects left by blight creepers. Set to -1 for infinite time. Default is 5 minutes.")
             public static int potionDuration;
+            @ConfigOption(name = "Region Size", category = CAT_MOB_BLIGHT)
+            @ConfigOption.RangeInt(value = 8, min = 1, max = 64)
+            @ConfigOption.Comment("The width of a region (in chunks) for \"Max Blights Per Region\".")
+            public static int regionSize;
+            @ConfigOption(name = "Pre-Enchant Equipment", category = CAT_MOB_BLIGHT_EQUIP)
+            @ConfigOption.BooleanDefault(true)
+            @ConfigOption.Comment("Enchant blight equipment ahead of time on a background thread, so spawning many" +
+                    " blights at once is cheaper. The number of items prepared follows how often blights spawn.")
+            public static boolean preEnchantEquipment;
             @ConfigOption(name = "Amplifier Speed", category = CAT_MOB_BLIGHT)
             @ConfigOption.RangeInt(value = 4, min = -1, max = 99)
             @ConfigOption.Comment("The amplifier level on the speed potion effect applied to blights. Set -1 to" +
@@ -437,6 +482,7 @@ public class Config extends ConfigBaseNew {
 
             public static EntityMatchList blightAllList = new EntityMatchList();
             public static EntityMatchList blacklist = new EntityMatchList();
+            public static String[] effects = new String[0];
             private static final String[] BLIGHT_BLACKLIST_DEFAULTS = new String[]{"minecraft:wither",
                     "minecraft:villager", "minecolonies:citizen"};
         }
@@ -518,6 +564,20 @@ public class Config extends ConfigBaseNew {
     }
 
     public static final class Difficulty {
+        @ConfigOption(name = "Area Cache Change Threshold", category = CAT_DIFFICULTY)
+        @ConfigOption.RangeFloat(value = 1, min = 0, max = 10000)
+        @ConfigOption.Comment("Cached area difficulty near a player is discarded when that player's difficulty changes" +
+                " by more than this amount.")
+        public static float areaCacheChangeThreshold;
+        @ConfigOption(name = "Area Cache Lifetime", category = CAT_DIFFICULTY)
+        @ConfigOption.RangeInt(value = 20, min = 1, max = 1200)
+        @ConfigOption.Comment("The number of ticks a cached area difficulty value stays valid.")
+        public static int areaCacheLifetime;
+        @ConfigOption(name = "Area Cache Size", category = CAT_DIFFICULTY)
+        @ConfigOption.RangeInt(value = 1024, min = 0, max = 65536)
+        @ConfigOption.Comment("The number of chunks per dimension to cache area difficulty for. Mobs spawning in the" +
+                " same chunk shortly after each other will reuse the cached value. Set to 0 to disable the cache.")
+        public static int areaCacheSize;
         @ConfigOption(name = "Difficulty Added When Sleeping", category = CAT_DIFFICULTY)
         @ConfigOption.RangeFloat(value = 0, min = -10000, max = 10000)
         @ConfigOption.Comment("Change in difficulty when a player sleeps through the night. Negative numbers cause difficulty to decrease.")
@@ -591,6 +651,7 @@ public class Config extends ConfigBaseNew {
         public static Map<Integer, Float> DIMENSION_INCREASE_MULTIPLIER = new HashMap<>();
         public static Map<Integer, SimpleExpression> DIMENSION_VALUE_FACTOR = new HashMap<>();
         public static EnumAreaDifficultyMode AREA_DIFFICULTY_MODE = EnumAreaDifficultyMode.WEIGHTED_AVERAGE;
+        public static String customAreaMode = "";
         public static EnumResetTime DIFFFICULTY_RESET_TIME = EnumResetTime.NONE;
         public static boolean DIFFICULTY_LUNAR_MULTIPLIERS_ENABLED = false;
         public static float[] DIFFICULTY_LUNAR_MULTIPLIERS = new float[8];
@@ -746,6 +807,10 @@ public class Config extends ConfigBaseNew {
                             + " also a blacklist for extra health.")) {
                 Mob.Blight.blacklist.add(str);
             }
+            Mob.Blight.effects = config.getStringList("Potion Effects", CAT_MOB_BLIGHT, new String[0],
+                    "Extra potion effects given to blights, on top of the ones with their own options above."
+                            + " Each line has 2 values separated by a comma: the potion ID and the level (1 ="
+                            + " level I, 2 = level II, etc). Example: minecraft:resistance,2");
             // Blight equipment
             BLIGHT_EQUIPMENT_HIGHEST_COMMON_TIER = loadInt("Highest Common Tier", CAT_MOB_BLIGHT_EQUIP,
                     BLIGHT_EQUIPMENT_HIGHEST_COMMON_TIER, 0, 4,
@@ -863,7 +928,11 @@ public class Config extends ConfigBaseNew {
                 }
             }
             Difficulty.AREA_DIFFICULTY_MODE = EnumAreaDifficultyMode.loadFromConfig(config, Difficulty.AREA_DIFFICULTY_MODE);
+            Difficulty.customAreaMode = config.getString("Custom Area Mode", CAT_DIFFICULTY, "",
+                    "The name of an area difficulty mode added by another mod. If not empty and the mode exists, it is"
+                            + " used instead of \"Area Mode\".").trim();
             Difficulty.DIFFFICULTY_RESET_TIME = EnumResetTime.loadFromConfig(config, Difficulty.DIFFFICULTY_RESET_TIME, CAT_DIFFICULTY);
+            AreaDifficultyCache.clearAll();
 
             // Network
             PACKET_DELAY = loadInt("Packet Delay", CAT_NETWORK,
@@ -905,6 +974,10 @@ public class Config extends ConfigBaseNew {
                     "Override the Morpheus new day handler to fire sleep events. Without this, difficulty will not increase when sleeping.");
 
             ModuleAprilTricks.instance.loadConfig(config);
+            // Rebuilt from the mob lists and kill values loaded above
+            EntityPolicy.clearAll();
+            MobStatRoller.clear();
+            BlightEffectList.INSTANCE.invalidate();
             ScalingHealth.logHelper.info("Config successfully loaded!");
         } catch (Exception ex) {
             ScalingHealth.logHelper.fatal("Could not load configuration file!");
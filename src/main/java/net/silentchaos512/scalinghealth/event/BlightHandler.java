@@ -22,9 +22,8 @@ import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityLivingBase;
 import net.minecraft.entity.passive.EntityTameable;
 import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.init.MobEffects;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.Item;
-import net.minecraft.potion.PotionEffect;
 import net.minecraft.util.DamageSource;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraft.util.text.TextComponentTranslation;
@@ -33,23 +32,25 @@ import net.minecraftforge.common.util.FakePlayer;
 import net.minecraftforge.event.entity.living.LivingAttackEvent;
 import net.minecraftforge.event.entity.living.LivingDeathEvent;
 import net.minecraftforge.event.entity.living.LivingEvent.LivingUpdateEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.fml.common.eventhandler.EventPriority;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
-import net.minecraftforge.fml.common.network.NetworkRegistry.TargetPoint;
 import net.silentchaos512.lib.util.ChatHelper;
 import net.silentchaos512.scalinghealth.ScalingHealth;
+import net.silentchaos512.scalinghealth.capability.MobState;
 import net.silentchaos512.scalinghealth.config.Config;
 import net.silentchaos512.scalinghealth.entity.EntityBlightFire;
 import net.silentchaos512.scalinghealth.init.ModItems;
 import net.silentchaos512.scalinghealth.network.NetworkHandler;
 import net.silentchaos512.scalinghealth.network.message.MessageMarkBlight;
+import net.silentchaos512.scalinghealth.utils.BlightEffectList;
+import net.silentchaos512.scalinghealth.world.BlightRegistry;
 
 import javax.annotation.Nullable;
 
 public final class BlightHandler {
     public static final BlightHandler INSTANCE = new BlightHandler();
 
-    private static final String NBT_BLIGHT = ScalingHealth.MOD_ID_OLD + ".IsBlight";
     private static final int UPDATE_DELAY = 200;
 
     private BlightHandler() {}
@@ -59,7 +60,8 @@ public final class BlightHandler {
     // ******************
 
     public static boolean isBlight(EntityLivingBase entityLiving) {
-        return entityLiving != null && entityLiving.getEntityData().getBoolean(NBT_BLIGHT);
+        MobState state = MobState.get(entityLiving);
+        return state != null && state.isBlight();
     }
 
     @Deprecated
@@ -67,22 +69,31 @@ public final class BlightHandler {
         markBlight(entityLiving, true);
     }
 
+    /**
+     * Sets the blight flag. On the server, clients tracking the entity are told if it changed.
+     * Players who start tracking it later are synced in {@link #onStartTracking}.
+     */
     public static void markBlight(EntityLivingBase entityLiving, boolean isBlight) {
-        if (entityLiving != null) {
-            entityLiving.getEntityData().setBoolean(NBT_BLIGHT, isBlight);
-
-            if (!isBlight) {
-                // Kill the blight's fire
-                EntityBlightFire blightFire = getBlightFire(entityLiving);
-                if (blightFire != null) {
-                    blightFire.setDead();
-                }
+        MobState state = MobState.get(entityLiving);
+        if (state != null) {
+            boolean changed = state.isBlight() != isBlight;
+            state.setBlight(isBlight);
+
+            if (changed && !entityLiving.world.isRemote) {
+                NetworkHandler.queueToAllTracking(new MessageMarkBlight(entityLiving, isBlight), entityLiving);
+            }
+
+            if (isBlight) {
+                BlightRegistry.get(entityLiving.world).addBlight(entityLiving);
+            } else {
+                // Also kills the blight's fire
+                BlightRegistry.get(entityLiving.world).removeBlight(entityLiving);
             }
         }
     }
 
     static void spawnBlightFire(EntityLivingBase blight) {
-        if (blight.world.isRemote || getBlightFire(blight) != null)
+        if (blight.world.isRemote || Config.Mob.Blight.clientSideFire || getBlightFire(blight) != null)
             return;
 
         EntityBlightFire fire = new EntityBlightFire(blight);
@@ -94,35 +105,18 @@ public final class BlightHandler {
 
     @Nullable
     private static EntityBlightFire getBlightFire(EntityLivingBase blight) {
-        for (EntityBlightFire fire : blight.world.getEntities(EntityBlightFire.class, e -> true))
-            if (blight.equals(fire.getParent()))
-                return fire;
-
-        return null;
+        return BlightRegistry.get(blight.world).getFire(blight);
     }
 
+    /**
+     * Gives the blight any of its potion effects that are missing or running out, and schedules
+     * the next check.
+     */
     static void applyBlightPotionEffects(EntityLivingBase entityLiving) {
-        int duration = Config.Mob.Blight.potionDuration;
-        if (duration < 0) {
-            duration = Integer.MAX_VALUE;
-        } else if (duration == 0) {
-            return;
-        }
-
-        // TODO: Replace specific potion effects with a list where users can add specific effects.
-
-        // Invisibility
-        if (Config.Mob.Blight.invisibility)
-            entityLiving.addPotionEffect(new PotionEffect(MobEffects.INVISIBILITY, duration, 0, true, false));
-        // Fire Resistance
-        if (Config.Mob.Blight.fireResist)
-            entityLiving.addPotionEffect(new PotionEffect(MobEffects.FIRE_RESISTANCE, duration, 0, true, false));
-        // Speed
-        if (Config.Mob.Blight.speedAmp > -1)
-            entityLiving.addPotionEffect(new PotionEffect(MobEffects.SPEED, duration, Config.Mob.Blight.speedAmp, true, false));
-        // Strength
-        if (Config.Mob.Blight.strengthAmp > -1)
-            entityLiving.addPotionEffect(new PotionEffect(MobEffects.STRENGTH, duration, Config.Mob.Blight.strengthAmp, true, false));
+        int delay = BlightEffectList.INSTANCE.apply(entityLiving);
+        MobState state = MobState.get(entityLiving);
+        if (state != null)
+            state.setNextEffectRefresh(entityLiving.world.getTotalWorldTime() + delay);
     }
 
     // **********
@@ -207,19 +201,27 @@ public final class BlightHandler {
 
             // Add in entity ID so not all blights update on the same tick
             if ((world.getTotalWorldTime() + entityLiving.getEntityId()) % UPDATE_DELAY == 0) {
-                // Send message to clients to make sure they know the entity is a blight.
-                MessageMarkBlight message = new MessageMarkBlight(entityLiving, true);
-                NetworkHandler.INSTANCE.sendToAllAround(message, new TargetPoint(entityLiving.dimension,
-                        entityLiving.posX, entityLiving.posY, entityLiving.posZ, 128));
-
-                // Effects
-                // Assign a blight fire if necessary.
-                if (getBlightFire(entityLiving) == null)
+                // Assign a blight fire if necessary, or remove it if clients draw the fire now.
+                EntityBlightFire fire = getBlightFire(entityLiving);
+                if (fire == null)
                     spawnBlightFire(entityLiving);
+                else if (Config.Mob.Blight.clientSideFire)
+                    fire.setDead();
+            }
 
-                // Refresh potion effects
+            // Refresh potion effects when the shortest one is about to run out
+            MobState state = MobState.get(entityLiving);
+            if (state != null && world.getTotalWorldTime() >= state.getNextEffectRefresh())
                 applyBlightPotionEffects(entityLiving);
-            }
+        }
+    }
+
+    @SubscribeEvent
+    public void onStartTracking(PlayerEvent.StartTracking event) {
+        Entity target = event.getTarget();
+        if (target instanceof EntityLivingBase && isBlight((EntityLivingBase) target) && event.getEntityPlayer() instanceof EntityPlayerMP) {
+            MessageMarkBlight message = new MessageMarkBlight((EntityLivingBase) target, true);
+            NetworkHandler.queue(message, (EntityPlayerMP) event.getEntityPlayer());
         }
     }
 
@@ -33,6 +33,7 @@ import net.silentchaos512.lib.config.ConfigMultiValueLineParser;
 import net.silentchaos512.scalinghealth.ScalingHealth;
 import net.silentchaos512.scalinghealth.api.ScalingHealthAPI;
 import net.silentchaos512.scalinghealth.config.Config;
+import net.silentchaos512.scalinghealth.utils.TraceBuffer;
 import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
 
@@ -94,6 +95,7 @@ public final class DamageScaling {
             entityAttackedThisTick.add(entity.getPersistentID());
             entity.attackEntityFrom(event.getSource(), newAmount);
 
+            TraceBuffer.INSTANCE.recordDamage(entity, source.damageType, original, newAmount, scale, affectedAmount);
             if (Config.Debug.debugMode && Config.Debug.logPlayerDamage) {
                 ScalingHealth.LOGGER.info(MARKER, "{} on {}: {} -> {} (scale={}, affected={}, change={})",
                         source.damageType, entity.getName(), original, newAmount, scale, affectedAmount, change);
@@ -25,7 +25,6 @@ import net.minecraft.entity.SharedMonsterAttributes;
 import net.minecraft.entity.ai.attributes.AttributeModifier;
 import net.minecraft.entity.effect.EntityLightningBolt;
 import net.minecraft.entity.monster.EntityCreeper;
-import net.minecraft.entity.monster.IMob;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.init.Items;
 import net.minecraft.inventory.EntityEquipmentSlot;
@@ -35,7 +34,6 @@ import net.minecraft.potion.PotionEffect;
 import net.minecraft.util.DamageSource;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.World;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.entity.living.LivingDeathEvent;
@@ -43,24 +41,30 @@ import net.minecraftforge.event.entity.living.LivingEvent.LivingUpdateEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent.WorldTickEvent;
-import net.minecraftforge.fml.common.network.NetworkRegistry.TargetPoint;
-import net.silentchaos512.lib.util.AttributeHelper;
 import net.silentchaos512.scalinghealth.ScalingHealth;
+import net.silentchaos512.scalinghealth.api.ScalingHealthAPI;
 import net.silentchaos512.scalinghealth.api.event.BlightSpawnEvent;
+import net.silentchaos512.scalinghealth.capability.MobState;
 import net.silentchaos512.scalinghealth.config.Config;
+import net.silentchaos512.scalinghealth.lib.MobStatRoller;
+import net.silentchaos512.scalinghealth.lib.MobStats;
 import net.silentchaos512.scalinghealth.network.NetworkHandler;
 import net.silentchaos512.scalinghealth.network.message.MessageDebugData;
-import net.silentchaos512.scalinghealth.network.message.MessageMarkBlight;
 import net.silentchaos512.scalinghealth.utils.EntityDifficultyChangeList.DifficultyChanges;
 import net.silentchaos512.scalinghealth.utils.*;
 import net.silentchaos512.scalinghealth.utils.SHPlayerDataHandler.PlayerData;
+import net.silentchaos512.scalinghealth.world.BlightRegistry;
 import net.silentchaos512.scalinghealth.world.ScalingHealthSavedData;
 import net.silentchaos512.utils.MathUtils;
 
-import java.util.List;
 import java.util.Random;
 
 public class DifficultyHandler {
+    /**
+     * @deprecated Mob difficulty is now stored in {@link MobState}. Mobs with this tag are migrated
+     * automatically.
+     */
+    @Deprecated
     public static final String NBT_ENTITY_DIFFICULTY = ScalingHealth.RESOURCE_PREFIX + "difficulty";
     public static DifficultyHandler INSTANCE = new DifficultyHandler();
 
@@ -87,22 +91,23 @@ public class DifficultyHandler {
                 "The potion effects that mobs can spawn with. You can add effects from other mods if you"
                         + " want to, or remove existing ones. Each line has 3 values separated by commas: the"
                         + " potion ID, the minimum difficulty (higher = less common), and the level (1 = level I,"
-                        + " 2 = level II, etc).");
+                        + " 2 = level II, etc). An optional fourth value sets the weight (default 1); effects with"
+                        + " higher weights are picked more often.");
 
         for (String line : lines) {
             String[] params = line.split(",");
             if (params.length >= 3) {
                 // Ignore extra parameters
-                if (params.length > 3) {
+                if (params.length > 4) {
                     ScalingHealth.logHelper.warn("Mob potion effects: extra parameters in line: " + line
-                            + ". Ignoring extra parameters and processing the first 3.");
+                            + ". Ignoring extra parameters and processing the first 4.");
                 }
 
                 // Parse parameters.
                 int index = -1;
                 String id = "null";
                 Potion potion;
-                int minDiff, level;
+                int minDiff, level, weight = 1;
                 try {
                     id = params[++index];
                     potion = Potion.REGISTRY.getObject(new ResourceLocation(id));
@@ -110,6 +115,8 @@ public class DifficultyHandler {
                         throw new NullPointerException();
                     minDiff = Integer.parseInt(params[++index]);
                     level = Integer.parseInt(params[++index]);
+                    if (params.length > 3)
+                        weight = Integer.parseInt(params[++index]);
                 } catch (NumberFormatException ex) {
                     ScalingHealth.logHelper.warn("Mob potion effects: could not parse parameter " + index
                             + " as integer. Ignoring entire line: " + line);
@@ -120,7 +127,7 @@ public class DifficultyHandler {
                 }
 
                 // Put it in the map if nothing goes wrong!
-                potionMap.put(potion, minDiff, level - 1);
+                potionMap.put(potion, minDiff, level - 1, weight);
             } else {
                 ScalingHealth.logHelper.warn("Mob potion effects: malformed line (need 3 comma-separated values): "
                         + line + "Ignoring entire line.");
@@ -130,34 +137,54 @@ public class DifficultyHandler {
 
     @SubscribeEvent
     public void onMobSpawn(LivingUpdateEvent event) {
-        if (process(event.getEntityLiving())) {
+        // New mobs are handled by the spawn queue, if enabled. Anything the queue could not
+        // process (not ready in time, or rejected) is retried here, as without the queue.
+        if (!Config.Mob.spawnQueueEnabled || !isSpawnQueued(event.getEntityLiving())) {
+            processSpawn(event.getEntityLiving());
+        }
+    }
+
+    boolean processSpawn(EntityLivingBase entity) {
+        if (process(entity)) {
             ++debugMobsProcessed;
+            return true;
         }
+        return false;
     }
 
     private boolean process(EntityLivingBase entity) {
         if (!entity.world.isRemote && !isProcessed(entity) && entity instanceof EntityLiving) {
             boolean difficultyEnabled = Config.Difficulty.maxValue > 0;
 
-            if (difficultyEnabled && canIncreaseEntityHealth(entity) && !entityBlacklistedFromHealthIncrease(entity)) {
+            EntityPolicy policy = EntityPolicy.get(entity);
+
+            if (difficultyEnabled && canIncreaseEntityHealth(entity) && !entityBlacklistedFromHealthIncrease(entity, policy)) {
                 // Apply difficulty, possibly create a blight
-                boolean makeBlight = increaseEntityHealth(entity);
+                // The blight region cap is part of the roll (see canBecomeBlight)
+                boolean makeBlight = increaseEntityHealth(entity, policy);
                 if (makeBlight && !BlightHandler.isBlight(entity)) {
                     makeEntityBlight((EntityLiving) entity, ScalingHealth.random);
                 }
                 return true;
-            } else if (!difficultyEnabled && !entityBlacklistedFromBecomingBlight(entity)) {
+            } else if (!difficultyEnabled && !entityBlacklistedFromBecomingBlight(entity, policy)) {
                 // Difficulty system is "disabled", but we may want entities to be blights anyway
-                if (isAlwaysBlight(entity)) {
-                    // Always make blights
-                    makeEntityBlight((EntityLiving) entity, ScalingHealth.random);
-                } else if (Config.Mob.Blight.fixedBlightChance && MathUtils.tryPercentage(Config.Mob.Blight.chanceMultiplier)) {
-                    // Fixed rate
-                    makeEntityBlight((EntityLiving) entity, ScalingHealth.random);
+                // Regions that already have too many blights get normal mobs, which are still processed
+                if (!BlightRegistry.get(entity.world).isRegionFull(entity)) {
+                    if (policy.alwaysBlight) {
+                        // Always make blights
+                        makeEntityBlight((EntityLiving) entity, ScalingHealth.random);
+                    } else if (Config.Mob.Blight.fixedBlightChance && MathUtils.tryPercentage(Config.Mob.Blight.chanceMultiplier)) {
+                        // Fixed rate
+                        makeEntityBlight((EntityLiving) entity, ScalingHealth.random);
+                    }
                 }
 
-                // Set difficulty to -1 to prevent infinite reprocessing
-                entity.getEntityData().setShort(NBT_ENTITY_DIFFICULTY, (short) -1);
+                // Mark as processed (without difficulty) to prevent infinite reprocessing
+                MobState state = MobState.get(entity);
+                if (state != null) {
+                    state.setProcessed(true);
+                    state.setDifficulty(0);
+                }
 
                 return true;
             }
@@ -167,18 +194,23 @@ public class DifficultyHandler {
     }
 
     public boolean recalculate(EntityLivingBase entity) {
-        AttributeHelper.remove(entity, SharedMonsterAttributes.ATTACK_DAMAGE, ModifierHandler.MODIFIER_ID_DAMAGE);
-        AttributeHelper.remove(entity, SharedMonsterAttributes.MAX_HEALTH, ModifierHandler.MODIFIER_ID_HEALTH);
-        entity.getEntityData().setShort(NBT_ENTITY_DIFFICULTY, (short) 0);
+        ModifierHandler.removeMobModifiers(entity);
+        MobState state = MobState.get(entity);
+        if (state != null) {
+            state.setProcessed(false);
+            state.setDifficulty(0);
+        }
         return process(entity);
     }
 
-    private static boolean isProcessed(EntityLivingBase entity) {
-        return entity.getEntityData().getShort(NBT_ENTITY_DIFFICULTY) != 0;
+    static boolean isProcessed(EntityLivingBase entity) {
+        MobState state = MobState.get(entity);
+        return state != null && state.isProcessed();
     }
 
-    private static boolean isAlwaysBlight(EntityLivingBase entity) {
-        return Config.Mob.Blight.blightAlways && Config.Mob.Blight.blightAllList.matches(entity);
+    private static boolean isSpawnQueued(EntityLivingBase entity) {
+        MobState state = MobState.get(entity);
+        return state != null && state.isSpawnQueued();
     }
 
     @SubscribeEvent
@@ -188,7 +220,7 @@ public class DifficultyHandler {
 
         // Killed by player?
         if (source.getTrueSource() instanceof EntityPlayer) {
-            DifficultyChanges changes = Config.Difficulty.DIFFICULTY_PER_KILL_BY_MOB.get(killed);
+            DifficultyChanges changes = EntityPolicy.get(killed).killChanges;
             EntityPlayer player = (EntityPlayer) source.getTrueSource();
             PlayerData data = SHPlayerDataHandler.get(player);
             if (data != null) {
@@ -225,15 +257,12 @@ public class DifficultyHandler {
         INSTANCE.debugMobsProcessed = message.mobsProcessed;
     }
 
-    private boolean increaseEntityHealth(EntityLivingBase entityLiving) {
+    private boolean increaseEntityHealth(EntityLivingBase entityLiving, EntityPolicy policy) {
         if (Config.Difficulty.maxValue <= 0) return false;
 
         World world = entityLiving.world;
-        float difficulty = (float) Config.Difficulty.AREA_DIFFICULTY_MODE.getAreaDifficulty(world, entityLiving.getPosition());
+        float difficulty = (float) ScalingHealthAPI.getAreaDifficulty(world, entityLiving.getPosition());
         float originalDifficulty = difficulty;
-        float originalMaxHealth = entityLiving.getMaxHealth();
-        Random rand = ScalingHealth.random;
-        boolean isHostile = entityLiving instanceof IMob;
 
         // Lunar phase multipliers?
         if (Config.Difficulty.DIFFICULTY_LUNAR_MULTIPLIERS_ENABLED && world.getWorldTime() % 24000 > 12000) {
@@ -242,102 +271,47 @@ public class DifficultyHandler {
             difficulty *= multi;
         }
 
-        // Make blight?
-        boolean makeBlight = false;
-        if (!entityBlacklistedFromBecomingBlight(entityLiving)) {
-            float chance = Config.Mob.Blight.fixedBlightChance
-                    ? Config.Mob.Blight.chanceMultiplier
-                    : difficulty / Config.Difficulty.maxValue * Config.Mob.Blight.chanceMultiplier;
-            if (isAlwaysBlight(entityLiving) || rand.nextFloat() < chance) {
-                makeBlight = true;
-                difficulty *= Config.Mob.Blight.difficultyMultiplier;
-            }
-        }
-
-        entityLiving.getEntityData().setShort(NBT_ENTITY_DIFFICULTY, (short) difficulty);
-
-        float totalDifficulty = difficulty;
-
-        float genAddedHealth = difficulty;
-        float baseMaxHealth = (float) entityLiving
-                .getEntityAttribute(SharedMonsterAttributes.MAX_HEALTH).getBaseValue();
-        float healthMultiplier = isHostile ? Config.Mob.Health.hostileHealthMultiplier
-                : Config.Mob.Health.peacefulHealthMultiplier;
+        float baseMaxHealth = (float) entityLiving.getEntityAttribute(SharedMonsterAttributes.MAX_HEALTH).getBaseValue();
+        MobStats stats = MobStatRoller.get(potionMap).roll(difficulty, policy,
+                canBecomeBlight(entityLiving, policy), baseMaxHealth,
+                MobStatRoller.seed(entityLiving.getUniqueID()));
+        applyMobStats(entityLiving, stats);
+        TraceBuffer.INSTANCE.recordSpawn(entityLiving, stats);
 
-        genAddedHealth *= healthMultiplier;
+        if (Config.Debug.debugMode && Config.Debug.logSpawns && originalDifficulty > 0f) {
+            BlockPos pos = entityLiving.getPosition();
+            String line = "Spawn debug: %s (%d, %d, %d): Difficulty=%.2f, Health +%.2f, Damage +%.2f";
+            line = String.format(line, entityLiving.getName(), pos.getX(), pos.getY(), pos.getZ(),
+                    stats.difficulty, stats.addedHealth, stats.addedDamage);
+            ScalingHealth.logHelper.info(line);
+        }
 
-        if (Config.Difficulty.statsConsumeDifficulty) difficulty -= genAddedHealth;
+        return stats.blight;
+    }
 
-        if (difficulty > 0) {
-            float diffIncrease = 2 * healthMultiplier * difficulty * rand.nextFloat();
-            if (Config.Difficulty.statsConsumeDifficulty) difficulty -= diffIncrease;
-            genAddedHealth += diffIncrease;
-        }
+    /**
+     * Writes rolled stats to the mob. Turning the mob into a blight is left to the caller.
+     */
+    private static void applyMobStats(EntityLivingBase entityLiving, MobStats stats) {
+        float originalMaxHealth = entityLiving.getMaxHealth();
 
-        // Increase attack damage.
-        float genAddedDamage = 0;
-        if (difficulty > 0 && !Config.Mob.damageBonusBlacklist.contains(entityLiving)) {
-            float diffIncrease = difficulty * rand.nextFloat();
-            genAddedDamage = diffIncrease * Config.Mob.damageMultiplier;
-            // Clamp the value so it doesn't go over the maximum config.
-            if (Config.Mob.maxDamageBoost > 0f)
-                genAddedDamage = MathHelper.clamp(genAddedDamage, 0f, Config.Mob.maxDamageBoost);
-
-            // Decrease difficulty based on the damage actually added, instead of diffIncrease.
-            if (Config.Difficulty.statsConsumeDifficulty)
-                difficulty -= genAddedDamage / Config.Mob.damageMultiplier;
+        MobState state = MobState.get(entityLiving);
+        if (state != null) {
+            state.setProcessed(true);
+            state.setDifficulty(stats.difficulty);
         }
 
-        // Random potion effect
-        float potionChance = isHostile ? Config.Mob.hostilePotionChance
-                : Config.Mob.passivePotionChance;
-        if (difficulty > 0 && rand.nextFloat() < potionChance) {
-            MobPotionMap.PotionEntry pot = potionMap.getRandom(rand, (int) difficulty);
-            if (pot != null) {
-                entityLiving.addPotionEffect(new PotionEffect(pot.potion, POTION_APPLY_TIME));
-            }
+        if (stats.potion != null) {
+            entityLiving.addPotionEffect(new PotionEffect(stats.potion.potion, POTION_APPLY_TIME, stats.potion.amplifier));
         }
 
         // Apply extra health and damage.
-        float healthMulti;
-        float healthScaleDiff = Math.max(0, baseMaxHealth - 20f);
-        switch (Config.Mob.Health.healthScalingMode) {
-            case ADD:
-                ModifierHandler.setMaxHealth(entityLiving, genAddedHealth + baseMaxHealth, 0);
-                break;
-            case MULTI:
-                healthMulti = genAddedHealth / 20f;
-                ModifierHandler.setMaxHealth(entityLiving, healthMulti + baseMaxHealth, 1);
-                break;
-            case MULTI_HALF:
-                healthMulti = genAddedHealth / (20f + healthScaleDiff * 0.5f);
-                ModifierHandler.setMaxHealth(entityLiving, healthMulti + baseMaxHealth, 1);
-                break;
-            case MULTI_QUARTER:
-                healthMulti = genAddedHealth / (20f + healthScaleDiff * 0.75f);
-                ModifierHandler.setMaxHealth(entityLiving, healthMulti + baseMaxHealth, 1);
-                break;
-            default:
-                ScalingHealth.logHelper.fatal("Unknown mob health scaling mode: "
-                        + Config.Mob.Health.healthScalingMode.name());
-                break;
-        }
-        ModifierHandler.addAttackDamage(entityLiving, genAddedDamage, 0);
+        ModifierHandler.setMobModifiers(entityLiving, stats.maxHealthValue, stats.maxHealthOperation, stats.addedDamage);
 
         // Heal.
         if (entityLiving.getMaxHealth() != originalMaxHealth) {
             entityLiving.setHealth(entityLiving.getMaxHealth());
         }
-
-        if (Config.Debug.debugMode && Config.Debug.logSpawns && originalDifficulty > 0f) {
-            BlockPos pos = entityLiving.getPosition();
-            String line = "Spawn debug: %s (%d, %d, %d): Difficulty=%.2f, Health +%.2f, Damage +%.2f";
-            line = String.format(line, entityLiving.getName(), pos.getX(), pos.getY(), pos.getZ(),
-                    totalDifficulty, genAddedHealth, genAddedDamage);
-            ScalingHealth.logHelper.info(line);
-        }
-
-        return makeBlight;
     }
 
     private void makeEntityBlight(EntityLiving entityLiving, Random rand) {
@@ -359,59 +333,9 @@ public class DifficultyHandler {
         // Random Equipment
         // ================
 
-        // Select a tier (0 to 4)
-        final int highestTier = 4;
-        final int commonTier = Config.BLIGHT_EQUIPMENT_HIGHEST_COMMON_TIER;
-        int tier = rand.nextInt(1 + commonTier);
-        for (int j = 0; j < highestTier - commonTier; ++j) {
-            if (rand.nextFloat() < Config.BLIGHT_EQUIPMENT_TIER_UP_CHANCE) {
-                ++tier;
-            }
-        }
-        tier = MathHelper.clamp(tier, 0, highestTier);
-
-        float pieceChance = Config.BLIGHT_EQUIPMENT_ARMOR_PIECE_CHANCE;
-
-        // Armor slots
-        for (EntityEquipmentSlot slot : ORDERED_SLOTS) {
-            ItemStack oldEquipment = entityLiving.getItemStackFromSlot(slot);
-
-            if (slot != EntityEquipmentSlot.HEAD && rand.nextFloat() > pieceChance)
-                break;
-
-            if (oldEquipment.isEmpty()) {
-                ItemStack newEquipment = selectEquipmentForSlot(slot, tier);
-                if (!newEquipment.isEmpty()) {
-                    entityLiving.setItemStackToSlot(slot, newEquipment);
-                }
-            }
-        }
-
-        // Hand slots
-        pieceChance = Config.BLIGHT_EQUIPMENT_HAND_PIECE_CHANCE;
-        if (rand.nextFloat() > pieceChance) {
-            // Main hand
-            ItemStack oldEquipment = entityLiving.getHeldItemMainhand();
-            if (oldEquipment.isEmpty()) {
-                ItemStack newEquipment = selectEquipmentForSlot(EntityEquipmentSlot.MAINHAND, tier);
-                if (!newEquipment.isEmpty()) {
-                    entityLiving.setItemStackToSlot(EntityEquipmentSlot.MAINHAND, newEquipment);
-                }
-            }
-
-            // Off hand (only if we tried to do main hand)
-            if (rand.nextFloat() > pieceChance) {
-                oldEquipment = entityLiving.getHeldItemOffhand();
-                if (oldEquipment.isEmpty()) {
-                    ItemStack newEquipment = selectEquipmentForSlot(EntityEquipmentSlot.OFFHAND, tier);
-                    if (!newEquipment.isEmpty()) {
-                        entityLiving.setItemStackToSlot(EntityEquipmentSlot.OFFHAND, newEquipment);
-                    }
-                }
-            }
-        }
+        blightLoadout.equip(entityLiving, rand);
 
-        // Add random enchantments
+        // Add random enchantments (new equipment is already enchanted, this covers what the mob spawned with)
         for (EntityEquipmentSlot slot : EntityEquipmentSlot.values()) {
             ItemStack stack = entityLiving.getItemStackFromSlot(slot);
             if (!stack.isEmpty() && !stack.isItemEnchanted())
@@ -429,33 +353,12 @@ public class DifficultyHandler {
             entityLiving.heal(5);
         }
 
-        // Notify clients
-        MessageMarkBlight message = new MessageMarkBlight(entityLiving, true);
-        NetworkHandler.INSTANCE.sendToAllAround(message, new TargetPoint(entityLiving.dimension,
-                entityLiving.posX, entityLiving.posY, entityLiving.posZ, 128));
-
         MinecraftForge.EVENT_BUS.post(new BlightSpawnEvent.Post(entityLiving, entityLiving.world,
                 (float) entityLiving.posX, (float) entityLiving.posY, (float) entityLiving.posZ));
     }
 
-    private static boolean entityBlacklistedFromHealthIncrease(EntityLivingBase entityLiving) {
-        if (entityLiving == null) return true;
-
-        boolean isBoss = !entityLiving.isNonBoss();
-        boolean isHostile = entityLiving instanceof IMob;
-        boolean isPassive = !isHostile;
-
-        if ((isHostile && (Config.Mob.Health.hostileHealthMultiplier == 0 || !Config.Mob.Health.allowHostile))
-                || (isPassive && (Config.Mob.Health.peacefulHealthMultiplier == 0 || !Config.Mob.Health.allowPeaceful))
-                || (isBoss && (Config.Mob.Health.hostileHealthMultiplier == 0 || !Config.Mob.Health.allowBoss)))
-            return true;
-
-        EntityMatchList blacklist = Config.Mob.Health.mobBlacklist;
-        List<Integer> dimBlacklist = Config.Mob.Health.dimensionBlacklist;
-
-        if (blacklist == null || dimBlacklist == null) return false;
-
-        return blacklist.contains(entityLiving) || dimBlacklist.contains(entityLiving.dimension);
+    private static boolean entityBlacklistedFromHealthIncrease(EntityLivingBase entityLiving, EntityPolicy policy) {
+        return policy.healthBlacklisted || Config.Mob.Health.dimensionBlacklist.contains(entityLiving.dimension);
     }
 
     private static boolean canIncreaseEntityHealth(EntityLivingBase entity) {
@@ -468,21 +371,13 @@ public class DifficultyHandler {
         return entity.ticksExisted > 1 && (modifier == null || modifier.getAmount() == 0.0 || Double.isNaN(modifier.getAmount()));
     }
 
-    private static boolean entityBlacklistedFromBecomingBlight(EntityLivingBase entityLiving) {
-        if (entityLiving == null || BlightHandler.isBlight(entityLiving)) {
-            return true;
-        }
-
-        EntityMatchList blacklist = Config.Mob.Blight.blacklist;
-        boolean isBoss = !entityLiving.isNonBoss();
-        boolean isHostile = entityLiving instanceof IMob;
-        boolean isPassive = !isHostile;
-
-        return blacklist != null && (blacklist.contains(entityLiving)
-                || (isHostile && Config.Mob.Blight.blacklistHostiles)
-                || (isPassive && Config.Mob.Blight.blacklistPassives)
-                || (isBoss && Config.Mob.Blight.blacklistBosses));
+    private static boolean entityBlacklistedFromBecomingBlight(EntityLivingBase entityLiving, EntityPolicy policy) {
+        return policy.blightBlacklisted || BlightHandler.isBlight(entityLiving);
+    }
 
+    private static boolean canBecomeBlight(EntityLivingBase entityLiving, EntityPolicy policy) {
+        return !entityBlacklistedFromBecomingBlight(entityLiving, policy)
+                && !BlightRegistry.get(entityLiving.world).isRegionFull(entityLiving);
     }
 
     @SubscribeEvent
@@ -498,15 +393,14 @@ public class DifficultyHandler {
     // Equipment
     // **************************************************************************
 
-    private EntityEquipmentSlot[] ORDERED_SLOTS = {EntityEquipmentSlot.HEAD,
-            EntityEquipmentSlot.CHEST, EntityEquipmentSlot.LEGS, EntityEquipmentSlot.FEET};
+    public final BlightLoadoutGenerator blightLoadout = new BlightLoadoutGenerator();
 
-    public EquipmentTierMap mapHelmets = new EquipmentTierMap(5, EntityEquipmentSlot.HEAD);
-    public EquipmentTierMap mapChestplates = new EquipmentTierMap(5, EntityEquipmentSlot.CHEST);
-    public EquipmentTierMap mapLeggings = new EquipmentTierMap(5, EntityEquipmentSlot.LEGS);
-    public EquipmentTierMap mapBoots = new EquipmentTierMap(5, EntityEquipmentSlot.FEET);
-    public EquipmentTierMap mapMainhands = new EquipmentTierMap(5, EntityEquipmentSlot.MAINHAND);
-    public EquipmentTierMap mapOffhands = new EquipmentTierMap(5, EntityEquipmentSlot.OFFHAND);
+    public EquipmentTierMap mapHelmets = blightLoadout.getMap(EntityEquipmentSlot.HEAD);
+    public EquipmentTierMap mapChestplates = blightLoadout.getMap(EntityEquipmentSlot.CHEST);
+    public EquipmentTierMap mapLeggings = blightLoadout.getMap(EntityEquipmentSlot.LEGS);
+    public EquipmentTierMap mapBoots = blightLoadout.getMap(EntityEquipmentSlot.FEET);
+    public EquipmentTierMap mapMainhands = blightLoadout.getMap(EntityEquipmentSlot.MAINHAND);
+    public EquipmentTierMap mapOffhands = blightLoadout.getMap(EntityEquipmentSlot.OFFHAND);
 
     public void initDefaultEquipment() {
         mapHelmets.put(new ItemStack(Items.LEATHER_HELMET), 0);
@@ -533,24 +427,4 @@ public class DifficultyHandler {
         mapBoots.put(new ItemStack(Items.IRON_BOOTS), 3);
         mapBoots.put(new ItemStack(Items.DIAMOND_BOOTS), 4);
     }
-
-    private ItemStack selectEquipmentForSlot(EntityEquipmentSlot slot, int tier) {
-        tier = MathHelper.clamp(tier, 0, 4);
-        switch (slot) {
-            case CHEST:
-                return mapChestplates.getRandom(tier);
-            case FEET:
-                return mapBoots.getRandom(tier);
-            case HEAD:
-                return mapHelmets.getRandom(tier);
-            case LEGS:
-                return mapLeggings.getRandom(tier);
-            case MAINHAND:
-                return mapMainhands.getRandom(tier);
-            case OFFHAND:
-                return mapOffhands.getRandom(tier);
-            default:
-                return ItemStack.EMPTY;
-        }
-    }
 }
@@ -44,6 +44,7 @@ import net.minecraftforge.fml.common.gameevent.PlayerEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
 import net.silentchaos512.lib.util.ChatHelper;
 import net.silentchaos512.scalinghealth.ScalingHealth;
+import net.silentchaos512.scalinghealth.capability.MobState;
 import net.silentchaos512.scalinghealth.config.Config;
 import net.silentchaos512.scalinghealth.init.ModItems;
 import net.silentchaos512.scalinghealth.init.ModSounds;
@@ -108,8 +109,8 @@ public class ScalingHealthCommonEvents {
         EntityLivingBase entityLiving = event.getEntityLiving();
 
         // Additional XP from all mobs.
-        short difficulty = entityLiving.getEntityData()
-                .getShort(DifficultyHandler.NBT_ENTITY_DIFFICULTY);
+        MobState state = MobState.get(entityLiving);
+        float difficulty = state != null ? state.getDifficulty() : 0;
         float multi = 1.0f + Config.Mob.xpBoost * difficulty;
 
         float amount = event.getDroppedExperience();
@@ -226,7 +227,7 @@ public class ScalingHealthCommonEvents {
                 ChatHelper.sendMessage(player, "[Scaling Health] Your health has been reset.");
             }
 
-            data.getLastTimePlayed().setTime(today.getTime());
+            data.setLastTimePlayed(today);
 
             // Apply health modifier
             if (Config.Player.Health.allowModify) {
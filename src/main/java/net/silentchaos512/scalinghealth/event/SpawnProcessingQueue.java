@@ -0,0 +1,188 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.event;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityLiving;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.world.World;
+import net.minecraftforge.event.entity.EntityJoinWorldEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.EventPriority;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.common.gameevent.TickEvent.ServerTickEvent;
+import net.silentchaos512.scalinghealth.capability.MobState;
+import net.silentchaos512.scalinghealth.config.Config;
+import net.silentchaos512.scalinghealth.world.PlayerSpatialIndex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Spreads the processing of newly spawned mobs over several ticks. Mobs are queued when they
+ * join the world, and each server tick processes as many as the configured count and time
+ * budgets allow. Replaces processing on the first
+ * {@link net.minecraftforge.event.entity.living.LivingEvent.LivingUpdateEvent} when enabled.
+ * <p>
+ * Each mob gets a deadline when it is queued: mobs close to a player are due right away, mobs
+ * further away may wait up to {@link #MAX_WAIT_TICKS}. The queue is ordered by deadline, so new
+ * spawns near players cannot starve older ones. Mobs still queued {@link #MAX_OVERDUE_TICKS}
+ * after their deadline (the queue is not keeping up) are handed back to the update event.
+ * <p>
+ * Every mob polled counts against the budgets. Mobs that are removed or unloaded are dropped, and
+ * mobs that are not ready after {@link #MAX_NOT_READY_RETRIES} ticks or are rejected (game rule
+ * off, blight region full) are handed back to the update event, which retries them as they tick.
+ */
+public final class SpawnProcessingQueue {
+    public static final SpawnProcessingQueue INSTANCE = new SpawnProcessingQueue();
+
+    // Ticks a mob may wait in the queue for its first couple of updates
+    private static final int MAX_NOT_READY_RETRIES = 20;
+    // Extra ticks a mob may wait, per this many blocks from the nearest player
+    private static final int BLOCKS_PER_WAIT_TICK = 8;
+    // Longest a mob may wait before it is due, also used for mobs with no player in range
+    private static final int MAX_WAIT_TICKS = 100;
+    private static final int MAX_OVERDUE_TICKS = 100;
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparingLong(e -> e.deadline));
+    private final List<Entry> notReady = new ArrayList<>();
+    private long ticks;
+
+    private SpawnProcessingQueue() {}
+
+    public int size() {
+        return queue.size();
+    }
+
+    // Lowest priority, so canceled spawns are never queued
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void onEntityJoinWorld(EntityJoinWorldEvent event) {
+        Entity entity = event.getEntity();
+        if (!Config.Mob.spawnQueueEnabled || event.getWorld().isRemote || !(entity instanceof EntityLiving))
+            return;
+
+        EntityLiving entityLiving = (EntityLiving) entity;
+        MobState state = MobState.get(entityLiving);
+        if (state != null && !state.isProcessed() && !state.isSpawnQueued()) {
+            state.setSpawnQueued(true);
+            queue.add(new Entry(entityLiving, ticks + getWaitTicks(entityLiving)));
+        }
+    }
+
+    @SubscribeEvent
+    public void onServerTick(ServerTickEvent event) {
+        if (event.phase != Phase.END)
+            return;
+        ++ticks;
+
+        // Give up on mobs that are long overdue. This is cheap, so it is not budgeted.
+        while (!queue.isEmpty() && queue.peek().deadline + MAX_OVERDUE_TICKS < ticks) {
+            MobState state = MobState.get(queue.poll().entity);
+            if (state != null)
+                state.setSpawnQueued(false);
+        }
+        if (queue.isEmpty())
+            return;
+
+        final long deadline = System.nanoTime() + Config.Mob.spawnQueueTimeBudget * 1000L;
+        int polled = 0;
+
+        while (!queue.isEmpty() && polled < Config.Mob.spawnQueueMaxPerTick) {
+            // Always poll at least one, so the queue cannot stall on a slow mob
+            if (polled > 0 && System.nanoTime() > deadline)
+                break;
+
+            Entry entry = queue.poll();
+            ++polled;
+            EntityLiving entity = entry.entity;
+            MobState state = MobState.get(entity);
+            if (state == null)
+                continue;
+            if (!isLoaded(entity) || state.isProcessed()) {
+                state.setSpawnQueued(false);
+                continue;
+            }
+
+            // Mobs are not eligible until they have ticked a couple times, so wait for them
+            if (entity.ticksExisted <= 1) {
+                if (++entry.retries <= MAX_NOT_READY_RETRIES) {
+                    notReady.add(entry);
+                } else {
+                    // Probably in a chunk that is not ticking, leave it to the update event
+                    state.setSpawnQueued(false);
+                }
+                continue;
+            }
+
+            state.setSpawnQueued(false);
+            DifficultyHandler.INSTANCE.processSpawn(entity);
+        }
+
+        if (!notReady.isEmpty()) {
+            queue.addAll(notReady);
+            notReady.clear();
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        World world = event.getWorld();
+        if (!world.isRemote) {
+            queue.removeIf(entry -> entry.entity.world == world);
+        }
+    }
+
+    private static boolean isLoaded(EntityLiving entity) {
+        return !entity.isDead && entity.isAddedToWorld()
+                && entity.world.getChunkProvider().getLoadedChunk(entity.chunkCoordX, entity.chunkCoordZ) != null;
+    }
+
+    private static int getWaitTicks(EntityLiving entity) {
+        double distanceSq = getDistanceSqToNearestPlayer(entity);
+        if (distanceSq == Double.MAX_VALUE)
+            return MAX_WAIT_TICKS;
+        return (int) Math.min(MAX_WAIT_TICKS, Math.sqrt(distanceSq) / BLOCKS_PER_WAIT_TICK);
+    }
+
+    private static double getDistanceSqToNearestPlayer(EntityLiving entity) {
+        PlayerSpatialIndex index = PlayerSpatialIndex.get(entity.world);
+        int count = index.query(entity.posX, entity.posY, entity.posZ, Config.Difficulty.searchRadius);
+        double nearest = Double.MAX_VALUE;
+        for (int i = 0; i < count; ++i) {
+            EntityPlayer player = index.getPlayer(i);
+            nearest = Math.min(nearest, player.getDistanceSq(entity));
+        }
+        return nearest;
+    }
+
+    private static final class Entry {
+        final EntityLiving entity;
+        // Server tick by which the mob should be processed
+        final long deadline;
+        int retries;
+
+        Entry(EntityLiving entity, long deadline) {
+            this.entity = entity;
+            this.deadline = deadline;
+        }
+    }
+}
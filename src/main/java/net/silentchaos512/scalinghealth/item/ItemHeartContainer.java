@@ -128,7 +128,7 @@ public class ItemHeartContainer extends Item {
         spawnParticlesAndPlaySound(world, player);
         consumeLevels(player, levelRequirement);
         incrementUseStat(player);
-        NetworkHandler.INSTANCE.sendTo(new MessageDataSync(data, player), (EntityPlayerMP) player);
+        NetworkHandler.queue(new MessageDataSync(data, player), (EntityPlayerMP) player);
     }
 
     private static int getLevelsRequiredToUse(EntityPlayer player, ItemStack stack, boolean healthIncreaseAllowed) {
@@ -0,0 +1,319 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.lib;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+import net.silentchaos512.scalinghealth.ScalingHealth;
+import net.silentchaos512.scalinghealth.api.AreaDifficultyStrategy;
+import net.silentchaos512.scalinghealth.api.AreaDifficultyStrategy.Input;
+import net.silentchaos512.scalinghealth.config.Config;
+import net.silentchaos512.scalinghealth.utils.SHPlayerDataHandler;
+import net.silentchaos512.scalinghealth.utils.SHPlayerDataHandler.PlayerData;
+import net.silentchaos512.scalinghealth.world.AreaDifficultyCache;
+import net.silentchaos512.scalinghealth.world.PlayerSpatialIndex;
+import net.silentchaos512.scalinghealth.world.ScalingHealthSavedData;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Gathers the inputs an {@link AreaDifficultyStrategy} asks for, runs it, then applies clamping,
+ * the group bonus and the dimension factor. Each thread has its own evaluator, and player arrays
+ * are reused between calls, so evaluation does not allocate. Many positions can be evaluated in
+ * one call, which resolves position-independent inputs once.
+ * <p>
+ * An evaluator is not reentrant: it holds the state of the evaluation in progress, and throws if
+ * it is asked to start another. {@link #get} hands out a separate evaluator for nested calls,
+ * such as a strategy asking for the area difficulty of another position from
+ * {@link AreaDifficultyStrategy#getDifficulty}.
+ */
+public final class AreaDifficultyEvaluator implements AreaDifficultyStrategy.Context {
+    private static final ThreadLocal<AreaDifficultyEvaluator> EVALUATORS = ThreadLocal.withInitial(AreaDifficultyEvaluator::new);
+
+    // True while an evaluation is running
+    private boolean inUse;
+
+    // Resolved once per evaluation by prepare
+    private World world;
+    private AreaDifficultyStrategy strategy;
+    private boolean needsPlayers;
+    private boolean countsPlayers;
+    private int radius;
+    private float minValue;
+    private float maxValue;
+    private float groupAreaBonus;
+    @Nullable
+    private SimpleExpression dimensionFactor;
+
+    private int x;
+    private int y;
+    private int z;
+    private int searchRadius;
+    private int playerCount;
+    private double[] playerX = new double[16];
+    private double[] playerZ = new double[16];
+    private double[] playerDifficulty = new double[16];
+    private int spawnX;
+    private int spawnZ;
+    private double worldDifficulty;
+
+    private AreaDifficultyEvaluator() {}
+
+    /**
+     * Gets an evaluator for the current thread. If the thread's evaluator is in the middle of an
+     * evaluation, a new one is returned, so the evaluation in progress is not disturbed.
+     */
+    public static AreaDifficultyEvaluator get(World world) {
+        AreaDifficultyEvaluator evaluator = EVALUATORS.get();
+        return evaluator.inUse ? new AreaDifficultyEvaluator() : evaluator;
+    }
+
+    /**
+     * Gets the area difficulty with the default options (group bonus and clamping), using the
+     * area difficulty cache where possible.
+     */
+    public static double getAreaDifficulty(AreaDifficultyStrategy strategy, World world, BlockPos pos) {
+        if (!world.isRemote && AreaDifficultyCache.isEnabled())
+            return AreaDifficultyCache.get(world).getAreaDifficulty(strategy, pos);
+        return get(world).evaluate(strategy, world, pos, true, true);
+    }
+
+    public double evaluate(AreaDifficultyStrategy strategy, World world, BlockPos pos, boolean addGroupBonus, boolean clampValue) {
+        begin();
+        try {
+            if (!prepare(strategy, world, addGroupBonus))
+                return 0.0;
+            return evaluateAt(pos.getX(), pos.getY(), pos.getZ(), addGroupBonus, clampValue);
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * Evaluates many positions at once. Inputs shared by every position (game rule, spawn point,
+     * world data and config values) are only resolved once.
+     *
+     * @param positions Positions packed with {@link BlockPos#toLong()}
+     * @param out       Receives the area difficulty of each position
+     */
+    public void evaluate(AreaDifficultyStrategy strategy, World world, long[] positions, double[] out, boolean addGroupBonus, boolean clampValue) {
+        if (out.length < positions.length)
+            throw new IllegalArgumentException("Output array is smaller than position array");
+
+        begin();
+        try {
+            if (!prepare(strategy, world, addGroupBonus)) {
+                Arrays.fill(out, 0, positions.length, 0.0);
+                return;
+            }
+            for (int i = 0; i < positions.length; ++i) {
+                long packed = positions[i];
+                out[i] = evaluateAt(unpackX(packed), unpackY(packed), unpackZ(packed), addGroupBonus, clampValue);
+            }
+        } finally {
+            end();
+        }
+    }
+
+    private void begin() {
+        if (inUse)
+            throw new IllegalStateException("Area difficulty evaluator is already evaluating, use AreaDifficultyEvaluator.get for nested calls");
+        inUse = true;
+    }
+
+    private void end() {
+        world = null;
+        strategy = null;
+        inUse = false;
+    }
+
+    /**
+     * Resolves the inputs that do not depend on position.
+     *
+     * @return False if difficulty is disabled, in which case everything evaluates to zero
+     */
+    private boolean prepare(AreaDifficultyStrategy strategy, World world, boolean addGroupBonus) {
+        if (!world.isRemote && !world.getGameRules().getBoolean(ScalingHealth.GAME_RULE_DIFFICULTY)) {
+            // Difficulty is disabled via game rule.
+            return false;
+        }
+
+        this.world = world;
+        this.strategy = strategy;
+        Set<Input> inputs = strategy.getInputs();
+        needsPlayers = inputs.contains(Input.PLAYERS);
+        // Only the count is needed for the group bonus
+        countsPlayers = !needsPlayers && addGroupBonus && Config.Difficulty.groupAreaBonus != 0;
+        radius = Config.Difficulty.searchRadius;
+        searchRadius = radius <= 0 ? Integer.MAX_VALUE : radius;
+        minValue = Config.Difficulty.minValue;
+        maxValue = Config.Difficulty.maxValue;
+        groupAreaBonus = Config.Difficulty.groupAreaBonus;
+        dimensionFactor = Config.Difficulty.DIMENSION_VALUE_FACTOR.get(world.provider.getDimension());
+
+        if (inputs.contains(Input.SPAWN_POINT)) {
+            // Not the world info, so spawn point overrides of modded dimensions are respected
+            BlockPos spawn = world.getSpawnPoint();
+            spawnX = spawn.getX();
+            spawnZ = spawn.getZ();
+        }
+
+        if (inputs.contains(Input.WORLD_DATA)) {
+            ScalingHealthSavedData data = ScalingHealthSavedData.get(world);
+            //noinspection ConstantConditions
+            worldDifficulty = data != null ? data.difficulty : 0;
+        }
+
+        return true;
+    }
+
+    private double evaluateAt(int x, int y, int z, boolean addGroupBonus, boolean clampValue) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+
+        playerCount = 0;
+        if (needsPlayers) {
+            loadPlayers();
+            if (playerCount == 0)
+                return 0;
+        } else if (countsPlayers) {
+            playerCount = PlayerSpatialIndex.get(world).query(x, y, z, radius);
+        }
+
+        double ret = strategy.getDifficulty(this);
+        return applyModifiers(ret, playerCount, addGroupBonus, clampValue, minValue, maxValue, groupAreaBonus, dimensionFactor);
+    }
+
+    /**
+     * Applies clamping, the group bonus and the dimension factor to a strategy's result.
+     */
+    public static double applyModifiers(double value, int playerCount, boolean addGroupBonus, boolean clampValue,
+                                        float minValue, float maxValue, float groupAreaBonus,
+                                        @Nullable SimpleExpression dimensionFactor) {
+        double ret = value;
+
+        // Clamp to difficulty range (intentionally done before group bonus)
+        if (clampValue)
+            ret = MathHelper.clamp(ret, minValue, maxValue);
+
+        // Group bonus?
+        if (addGroupBonus && playerCount > 0)
+            ret *= 1 + groupAreaBonus * (playerCount - 1);
+
+        // Dimension value factor
+        if (dimensionFactor != null)
+            ret = dimensionFactor.apply(ret);
+
+        return ret;
+    }
+
+    private void loadPlayers() {
+        PlayerSpatialIndex index = PlayerSpatialIndex.get(world);
+        int count = index.query(x, y, z, radius);
+        if (count > playerX.length) {
+            int size = Math.max(count, playerX.length * 2);
+            playerX = Arrays.copyOf(playerX, size);
+            playerZ = Arrays.copyOf(playerZ, size);
+            playerDifficulty = Arrays.copyOf(playerDifficulty, size);
+        }
+
+        for (int i = 0; i < count; ++i) {
+            EntityPlayer player = index.getPlayer(i);
+            PlayerData data = SHPlayerDataHandler.get(player);
+            playerX[i] = player.posX;
+            playerZ[i] = player.posZ;
+            playerDifficulty[i] = data != null ? data.getDifficulty() : Double.NaN;
+        }
+        playerCount = count;
+    }
+
+    // Unpacking for BlockPos#toLong: 26 bits of x, 12 bits of y, then 26 bits of z
+
+    public static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    public static int unpackY(long packed) {
+        return (int) (packed << 26 >> 52);
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed << 38 >> 38);
+    }
+
+    @Override
+    public int getX() {
+        return x;
+    }
+
+    @Override
+    public int getY() {
+        return y;
+    }
+
+    @Override
+    public int getZ() {
+        return z;
+    }
+
+    @Override
+    public int getSearchRadius() {
+        return searchRadius;
+    }
+
+    @Override
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    @Override
+    public double getPlayerX(int index) {
+        return playerX[index];
+    }
+
+    @Override
+    public double getPlayerZ(int index) {
+        return playerZ[index];
+    }
+
+    @Override
+    public double getPlayerDifficulty(int index) {
+        return playerDifficulty[index];
+    }
+
+    @Override
+    public int getSpawnX() {
+        return spawnX;
+    }
+
+    @Override
+    public int getSpawnZ() {
+        return spawnZ;
+    }
+
+    @Override
+    public double getWorldDifficulty() {
+        return worldDifficulty;
+    }
+}
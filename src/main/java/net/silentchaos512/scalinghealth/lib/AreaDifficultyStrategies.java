@@ -0,0 +1,202 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.lib;
+
+import net.silentchaos512.scalinghealth.ScalingHealth;
+import net.silentchaos512.scalinghealth.api.AreaDifficultyStrategy;
+import net.silentchaos512.scalinghealth.api.AreaDifficultyStrategy.Context;
+import net.silentchaos512.scalinghealth.api.AreaDifficultyStrategy.Input;
+import net.silentchaos512.scalinghealth.config.Config;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Built-in area difficulty strategies (one for each {@link EnumAreaDifficultyMode}) and the
+ * registry of strategies added by other mods.
+ */
+public final class AreaDifficultyStrategies {
+    private static final Set<Input> PLAYERS = Collections.unmodifiableSet(EnumSet.of(Input.PLAYERS));
+    private static final Set<Input> NONE = Collections.unmodifiableSet(EnumSet.noneOf(Input.class));
+    private static final Set<Input> SPAWN_POINT = Collections.unmodifiableSet(EnumSet.of(Input.SPAWN_POINT));
+    private static final Set<Input> PLAYERS_AND_SPAWN_POINT = Collections.unmodifiableSet(EnumSet.of(Input.PLAYERS, Input.SPAWN_POINT));
+    private static final Set<Input> WORLD_DATA = Collections.unmodifiableSet(EnumSet.of(Input.WORLD_DATA));
+
+    public static final AreaDifficultyStrategy WEIGHTED_AVERAGE = new Strategy(PLAYERS) {
+        @Override
+        public double getDifficulty(Context context) {
+            return weightedAverage(context);
+        }
+    };
+
+    public static final AreaDifficultyStrategy AVERAGE = new Strategy(PLAYERS) {
+        @Override
+        public double getDifficulty(Context context) {
+            double total = 0;
+            for (int i = 0; i < context.getPlayerCount(); ++i) {
+                double d = context.getPlayerDifficulty(i);
+                if (!Double.isNaN(d))
+                    total += d;
+            }
+            return total / context.getPlayerCount();
+        }
+    };
+
+    public static final AreaDifficultyStrategy MIN_LEVEL = new Strategy(PLAYERS) {
+        @Override
+        public double getDifficulty(Context context) {
+            double min = Config.Difficulty.maxValue;
+            for (int i = 0; i < context.getPlayerCount(); ++i) {
+                double d = context.getPlayerDifficulty(i);
+                if (!Double.isNaN(d))
+                    min = Math.min(d, min);
+            }
+            return min;
+        }
+    };
+
+    public static final AreaDifficultyStrategy MAX_LEVEL = new Strategy(PLAYERS) {
+        @Override
+        public double getDifficulty(Context context) {
+            double max = 0;
+            for (int i = 0; i < context.getPlayerCount(); ++i) {
+                double d = context.getPlayerDifficulty(i);
+                if (!Double.isNaN(d))
+                    max = Math.max(d, max);
+            }
+            return max;
+        }
+    };
+
+    public static final AreaDifficultyStrategy DISTANCE_FROM_SPAWN = new Strategy(SPAWN_POINT) {
+        @Override
+        public double getDifficulty(Context context) {
+            return distance(context, context.getSpawnX(), context.getSpawnZ());
+        }
+    };
+
+    public static final AreaDifficultyStrategy DISTANCE_FROM_ORIGIN = new Strategy(NONE) {
+        @Override
+        public double getDifficulty(Context context) {
+            return distance(context, 0, 0);
+        }
+    };
+
+    public static final AreaDifficultyStrategy DISTANCE_AND_TIME = new Strategy(PLAYERS_AND_SPAWN_POINT) {
+        @Override
+        public double getDifficulty(Context context) {
+            return weightedAverage(context) + distance(context, context.getSpawnX(), context.getSpawnZ());
+        }
+    };
+
+    public static final AreaDifficultyStrategy SERVER_WIDE = new Strategy(WORLD_DATA) {
+        @Override
+        public double getDifficulty(Context context) {
+            return context.getWorldDifficulty();
+        }
+    };
+
+    private static final Map<String, AreaDifficultyStrategy> REGISTRY = new LinkedHashMap<>();
+
+    static {
+        REGISTRY.put("WEIGHTED_AVERAGE", WEIGHTED_AVERAGE);
+        REGISTRY.put("AVERAGE", AVERAGE);
+        REGISTRY.put("MIN_LEVEL", MIN_LEVEL);
+        REGISTRY.put("MAX_LEVEL", MAX_LEVEL);
+        REGISTRY.put("DISTANCE_FROM_SPAWN", DISTANCE_FROM_SPAWN);
+        REGISTRY.put("DISTANCE_FROM_ORIGIN", DISTANCE_FROM_ORIGIN);
+        REGISTRY.put("DISTANCE_AND_TIME", DISTANCE_AND_TIME);
+        REGISTRY.put("SERVER_WIDE", SERVER_WIDE);
+    }
+
+    private AreaDifficultyStrategies() {}
+
+    public static void register(String name, AreaDifficultyStrategy strategy) {
+        String key = name.toUpperCase(Locale.ROOT);
+        if (REGISTRY.containsKey(key))
+            throw new IllegalArgumentException("Area difficulty strategy '" + name + "' is already registered");
+        REGISTRY.put(key, strategy);
+        ScalingHealth.LOGGER.info("Registered area difficulty strategy '{}'", key);
+    }
+
+    @Nullable
+    public static AreaDifficultyStrategy get(String name) {
+        return REGISTRY.get(name.toUpperCase(Locale.ROOT));
+    }
+
+    public static Set<String> getNames() {
+        return Collections.unmodifiableSet(REGISTRY.keySet());
+    }
+
+    /**
+     * Gets the strategy selected in the config. "Custom Area Mode" takes priority over "Area Mode"
+     * if it names a registered strategy.
+     */
+    public static AreaDifficultyStrategy getActive() {
+        String custom = Config.Difficulty.customAreaMode;
+        if (!custom.isEmpty()) {
+            AreaDifficultyStrategy strategy = get(custom);
+            if (strategy != null)
+                return strategy;
+        }
+        return Config.Difficulty.AREA_DIFFICULTY_MODE.getStrategy();
+    }
+
+    private static double weightedAverage(Context context) {
+        final int radius = context.getSearchRadius();
+        final int x = context.getX();
+        final int z = context.getZ();
+        double total = 0;
+        int totalWeight = 0;
+
+        for (int i = 0; i < context.getPlayerCount(); ++i) {
+            double d = context.getPlayerDifficulty(i);
+            if (!Double.isNaN(d)) {
+                double dx = x - (int) context.getPlayerX(i);
+                double dz = z - (int) context.getPlayerZ(i);
+                int distance = (int) Math.sqrt(dx * dx + dz * dz);
+                int weight = (radius - distance) / 16 + 1;
+
+                total += weight * d;
+                totalWeight += weight;
+            }
+        }
+
+        return totalWeight <= 0 ? 0 : total / totalWeight;
+    }
+
+    private static double distance(Context context, int originX, int originZ) {
+        double dx = context.getX() - originX;
+        double dz = context.getZ() - originZ;
+        return Math.sqrt(dx * dx + dz * dz) * Config.Difficulty.perBlock;
+    }
+
+    private abstract static class Strategy implements AreaDifficultyStrategy {
+        private final Set<Input> inputs;
+
+        Strategy(Set<Input> inputs) {
+            this.inputs = inputs;
+        }
+
+        @Override
+        public Set<Input> getInputs() {
+            return inputs;
+        }
+    }
+}
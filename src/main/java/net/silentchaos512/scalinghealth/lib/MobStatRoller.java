@@ -0,0 +1,181 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.lib;
+
+import net.minecraft.util.math.MathHelper;
+import net.silentchaos512.scalinghealth.config.Config;
+import net.silentchaos512.scalinghealth.utils.EntityPolicy;
+import net.silentchaos512.scalinghealth.utils.MobPotionMap;
+
+import javax.annotation.Nullable;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Rolls the stats of a newly spawned mob from its difficulty. The config values used are copied
+ * when the roller is created, and every roll uses its own random generator seeded by the caller,
+ * so rolling does not touch the entity, the world or any shared state. The same inputs always give
+ * the same {@link MobStats}, and rolls can be made from any thread.
+ */
+public final class MobStatRoller {
+    @Nullable
+    private static volatile MobStatRoller current;
+
+    private final MobPotionMap potionMap;
+    private final float maxDifficulty;
+    private final boolean fixedBlightChance;
+    private final float blightChanceMultiplier;
+    private final float blightDifficultyMultiplier;
+    private final float hostileHealthMultiplier;
+    private final float peacefulHealthMultiplier;
+    private final EnumHealthModMode healthScalingMode;
+    private final boolean statsConsumeDifficulty;
+    private final float damageMultiplier;
+    private final float maxDamageBoost;
+    private final float hostilePotionChance;
+    private final float passivePotionChance;
+
+    private MobStatRoller(MobPotionMap potionMap) {
+        this.potionMap = potionMap;
+        this.maxDifficulty = Config.Difficulty.maxValue;
+        this.fixedBlightChance = Config.Mob.Blight.fixedBlightChance;
+        this.blightChanceMultiplier = Config.Mob.Blight.chanceMultiplier;
+        this.blightDifficultyMultiplier = Config.Mob.Blight.difficultyMultiplier;
+        this.hostileHealthMultiplier = Config.Mob.Health.hostileHealthMultiplier;
+        this.peacefulHealthMultiplier = Config.Mob.Health.peacefulHealthMultiplier;
+        this.healthScalingMode = Config.Mob.Health.healthScalingMode;
+        this.statsConsumeDifficulty = Config.Difficulty.statsConsumeDifficulty;
+        this.damageMultiplier = Config.Mob.damageMultiplier;
+        this.maxDamageBoost = Config.Mob.maxDamageBoost;
+        this.hostilePotionChance = Config.Mob.hostilePotionChance;
+        this.passivePotionChance = Config.Mob.passivePotionChance;
+    }
+
+    /**
+     * Gets a roller for the current config, creating it if the config has changed.
+     */
+    public static MobStatRoller get(MobPotionMap potionMap) {
+        MobStatRoller roller = current;
+        if (roller == null || roller.potionMap != potionMap) {
+            roller = new MobStatRoller(potionMap);
+            current = roller;
+        }
+        return roller;
+    }
+
+    /**
+     * Discards the current roller. Called when the config is loaded.
+     */
+    public static void clear() {
+        current = null;
+    }
+
+    /**
+     * Derives a well-mixed seed from an entity's UUID (SplitMix64 finalizer), so each mob always
+     * rolls the same stats for the same difficulty.
+     */
+    public static long seed(UUID uuid) {
+        return mix64(uuid.getMostSignificantBits() ^ mix64(uuid.getLeastSignificantBits()));
+    }
+
+    private static long mix64(long z) {
+        z += 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Rolls stats for a mob.
+     *
+     * @param difficulty      The mob's difficulty, including any lunar phase multiplier
+     * @param policy          The policy for the mob's type
+     * @param canBecomeBlight Whether the mob is allowed to become a blight
+     * @param baseMaxHealth   The base value of the mob's max health attribute
+     * @param seed            The seed for this roll, usually from {@link #seed(UUID)}
+     */
+    public MobStats roll(float difficulty, EntityPolicy policy, boolean canBecomeBlight, float baseMaxHealth, long seed) {
+        Random rand = new Random(seed);
+
+        // Make blight?
+        boolean blight = false;
+        if (canBecomeBlight) {
+            float chance = fixedBlightChance
+                    ? blightChanceMultiplier
+                    : difficulty / maxDifficulty * blightChanceMultiplier;
+            if (policy.alwaysBlight || rand.nextFloat() < chance) {
+                blight = true;
+                difficulty *= blightDifficultyMultiplier;
+            }
+        }
+
+        final float totalDifficulty = difficulty;
+        final float healthMultiplier = policy.isHostile ? hostileHealthMultiplier : peacefulHealthMultiplier;
+
+        float addedHealth = difficulty * healthMultiplier;
+        if (statsConsumeDifficulty) difficulty -= addedHealth;
+
+        if (difficulty > 0) {
+            float diffIncrease = 2 * healthMultiplier * difficulty * rand.nextFloat();
+            if (statsConsumeDifficulty) difficulty -= diffIncrease;
+            addedHealth += diffIncrease;
+        }
+
+        // Increase attack damage.
+        float addedDamage = 0;
+        if (difficulty > 0 && !policy.damageBonusBlacklisted) {
+            float diffIncrease = difficulty * rand.nextFloat();
+            addedDamage = diffIncrease * damageMultiplier;
+            // Clamp the value so it doesn't go over the maximum config.
+            if (maxDamageBoost > 0f)
+                addedDamage = MathHelper.clamp(addedDamage, 0f, maxDamageBoost);
+
+            // Decrease difficulty based on the damage actually added, instead of diffIncrease.
+            if (statsConsumeDifficulty)
+                difficulty -= addedDamage / damageMultiplier;
+        }
+
+        // Random potion effect
+        MobPotionMap.PotionEntry potion = null;
+        float potionChance = policy.isHostile ? hostilePotionChance : passivePotionChance;
+        if (difficulty > 0 && rand.nextFloat() < potionChance) {
+            potion = potionMap.getRandom(rand, (int) difficulty);
+        }
+
+        // Extra health, depending on scaling mode
+        float healthScaleDiff = Math.max(0, baseMaxHealth - 20f);
+        float healthValue;
+        switch (healthScalingMode) {
+            case MULTI:
+                healthValue = addedHealth / 20f + baseMaxHealth;
+                break;
+            case MULTI_HALF:
+                healthValue = addedHealth / (20f + healthScaleDiff * 0.5f) + baseMaxHealth;
+                break;
+            case MULTI_QUARTER:
+                healthValue = addedHealth / (20f + healthScaleDiff * 0.75f) + baseMaxHealth;
+                break;
+            default:
+                healthValue = addedHealth + baseMaxHealth;
+                break;
+        }
+
+        return new MobStats(blight, totalDifficulty, addedHealth, healthValue, healthScalingMode.op, addedDamage, potion);
+    }
+}
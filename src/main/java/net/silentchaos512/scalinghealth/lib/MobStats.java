@@ -0,0 +1,61 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.lib;
+
+import net.silentchaos512.scalinghealth.utils.MobPotionMap.PotionEntry;
+
+import javax.annotation.Nullable;
+
+/**
+ * The stats rolled for a newly spawned mob by {@link MobStatRoller}. Immutable.
+ */
+public final class MobStats {
+    /**
+     * Whether the mob should become a blight.
+     */
+    public final boolean blight;
+    /**
+     * The mob's difficulty, after the blight multiplier.
+     */
+    public final float difficulty;
+    /**
+     * The extra health generated from difficulty, before the scaling mode is applied.
+     */
+    public final float addedHealth;
+    /**
+     * The value and operation to pass to
+     * {@link net.silentchaos512.scalinghealth.utils.ModifierHandler#setMaxHealth}.
+     */
+    public final float maxHealthValue;
+    public final int maxHealthOperation;
+    public final float addedDamage;
+    @Nullable
+    public final PotionEntry potion;
+
+    MobStats(boolean blight, float difficulty, float addedHealth, float maxHealthValue, int maxHealthOperation,
+             float addedDamage, @Nullable PotionEntry potion) {
+        this.blight = blight;
+        this.difficulty = difficulty;
+        this.addedHealth = addedHealth;
+        this.maxHealthValue = maxHealthValue;
+        this.maxHealthOperation = maxHealthOperation;
+        this.addedDamage = addedDamage;
+        this.potion = potion;
+    }
+}
@@ -1,12 +1,17 @@
 package net.silentchaos512.scalinghealth.network;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-
-import org.apache.commons.lang3.tuple.Pair;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.netty.buffer.ByteBuf;
 import net.minecraft.item.ItemStack;
@@ -16,32 +21,55 @@ import net.minecraftforge.fml.common.network.ByteBufUtils;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
-
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+import net.silentchaos512.scalinghealth.network.message.MessageBundle;
+
+import javax.annotation.Nullable;
+
+/**
+ * Base class for messages that are serialized from their public fields. Each message class gets a
+ * {@link Codec} the first time it is sent or received, which reads and writes the fields (sorted
+ * by name) through method handles, so packets are not serialized by reflection. Messages can
+ * override {@link #toBytes} and {@link #fromBytes} to use their own format instead.
+ */
 public class Message<REQ extends Message> implements Serializable, IMessage, IMessageHandler<REQ, IMessage> {
 
-  private static final HashMap<Class, Pair<Reader, Writer>> handlers = new HashMap();
-  private static final HashMap<Class, Field[]> fieldCache = new HashMap();
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final Map<Class<?>, Codec> codecs = new ConcurrentHashMap<>();
 
-  static {
-    map(byte.class, Message::readByte, Message::writeByte);
-    map(short.class, Message::readShort, Message::writeShort);
-    map(int.class, Message::readInt, Message::writeInt);
-    map(long.class, Message::readLong, Message::writeLong);
-    map(float.class, Message::readFloat, Message::writeFloat);
-    map(double.class, Message::readDouble, Message::writeDouble);
-    map(boolean.class, Message::readBoolean, Message::writeBoolean);
-    map(char.class, Message::readChar, Message::writeChar);
-    map(String.class, Message::readString, Message::writeString);
-    map(NBTTagCompound.class, Message::readNBT, Message::writeNBT);
-    map(ItemStack.class, Message::readItemStack, Message::writeItemStack);
-    map(BlockPos.class, Message::readBlockPos, Message::writeBlockPos);
+  public IMessage handleMessage(MessageContext context) {
+
+    return null;
   }
 
-  public IMessage handleMessage(MessageContext context) {
+  /**
+   * Applies a message on the client's main thread. Client-bound messages do their work here and
+   * schedule it from {@link #handleMessage}, so a {@link MessageBundle} can apply all of its
+   * messages in one scheduled action.
+   */
+  @SideOnly(Side.CLIENT)
+  public void handleClient() {
+  }
+
+  /**
+   * Messages queued with {@link NetworkHandler#queue} for the same player, of the same class and
+   * with equal keys replace each other, so only the newest is sent. Null (the default) means the
+   * message is never replaced.
+   */
+  @Nullable
+  public Object getBundleKey() {
 
     return null;
   }
 
+  /**
+   * Called when this message replaces an older queued one (see {@link #getBundleKey}), in case it
+   * needs anything from it. Does nothing by default.
+   */
+  public void mergeFrom(Message older) {
+  }
+
   @Override
   public final IMessage onMessage(REQ message, MessageContext context) {
 
@@ -52,137 +80,265 @@ public class Message<REQ extends Message> implements Serializable, IMessage, IMe
   public void fromBytes(ByteBuf buf) {
 
     try {
-      Class<?> clazz = getClass();
-      Field[] clFields = getClassFields(clazz);
-      for(Field f : clFields) {
-        Class<?> type = f.getType();
-        if(acceptField(f, type))
-          readField(f, type, buf);
-      }
-    } catch(Exception e) {
+      getCodec(getClass()).read(this, buf);
+    } catch(Throwable e) {
       throw new RuntimeException("Error at reading packet " + this, e);
     }
   }
 
   @Override
-  public final void toBytes(ByteBuf buf) {
+  public void toBytes(ByteBuf buf) {
     try {
-      Class<?> clazz = getClass();
-      Field[] clFields = getClassFields(clazz);
-      for(Field f : clFields) {
-        Class<?> type = f.getType();
-        if(acceptField(f, type))
-          writeField(f, type, buf);
-      }
-    } catch(Exception e) {
+      getCodec(getClass()).write(this, buf);
+    } catch(Throwable e) {
       throw new RuntimeException("Error at writing packet " + this, e);
     }
   }
 
-  private static Field[] getClassFields(Class<?> clazz) {
-    if(fieldCache.containsValue(clazz))
-      return fieldCache.get(clazz);
-    else {
-      Field[] fields = clazz.getFields();
-      Arrays.sort(fields, (Field f1, Field f2) -> {
-        return f1.getName().compareTo(f2.getName());
-      });
-      fieldCache.put(clazz, fields);
-      return fields;
+  private static Codec getCodec(Class<?> clazz) {
+    Codec codec = codecs.get(clazz);
+    if(codec == null)
+      codec = codecs.computeIfAbsent(clazz, Codec::new);
+    return codec;
+  }
+
+  /**
+   * Reads and writes the fields of one message class, in a fixed order.
+   */
+  private static final class Codec {
+    private final FieldCodec[] fields;
+
+    Codec(Class<?> clazz) {
+      Field[] clFields = clazz.getFields();
+      Arrays.sort(clFields, Comparator.comparing(Field::getName));
+
+      List<FieldCodec> list = new ArrayList<>();
+      try {
+        for(Field f : clFields) {
+          FieldCodec fieldCodec = createFieldCodec(f);
+          if(fieldCodec != null)
+            list.add(fieldCodec);
+        }
+      } catch(IllegalAccessException e) {
+        throw new RuntimeException("Could not create codec for " + clazz, e);
+      }
+      this.fields = list.toArray(new FieldCodec[0]);
     }
-  }
 
-  private final void writeField(Field f, Class clazz, ByteBuf buf) throws IllegalArgumentException, IllegalAccessException {
-    Pair<Reader, Writer> handler = getHandler(clazz);
-    handler.getRight().write(f.get(this), buf);
-  }
-
-  private final void readField(Field f, Class clazz, ByteBuf buf) throws IllegalArgumentException, IllegalAccessException {
-    Pair<Reader, Writer> handler = getHandler(clazz);
-    f.set(this, handler.getLeft().read(buf));
-  }
+    void write(Message msg, ByteBuf buf) throws Throwable {
+      for(FieldCodec f : fields)
+        f.write(msg, buf);
+    }
 
-  private static Pair<Reader, Writer> getHandler(Class<?> clazz) {
-    Pair<Reader, Writer> pair = handlers.get(clazz);
-    if(pair == null)
-      throw new RuntimeException("No R/W handler for  " + clazz);
-    return pair;
+    void read(Message msg, ByteBuf buf) throws Throwable {
+      for(FieldCodec f : fields)
+        f.read(msg, buf);
+    }
   }
 
-  private static boolean acceptField(Field f, Class<?> type) {
+  private static FieldCodec createFieldCodec(Field f) throws IllegalAccessException {
     int mods = f.getModifiers();
     if(Modifier.isFinal(mods) || Modifier.isStatic(mods) || Modifier.isTransient(mods))
-      return false;
-
-    return  handlers.containsKey(type);
+      return null;
+
+    Class<?> type = f.getType();
+    f.setAccessible(true);
+    // Adapt the handles so each field type can be invoked exactly, without boxing primitives
+    Class<?> handleType = type.isPrimitive() ? type : Object.class;
+    MethodHandle get = LOOKUP.unreflectGetter(f).asType(MethodType.methodType(handleType, Message.class));
+    MethodHandle set = LOOKUP.unreflectSetter(f).asType(MethodType.methodType(void.class, Message.class, handleType));
+
+    if(type == byte.class)
+      return new ByteField(get, set);
+    if(type == short.class)
+      return new ShortField(get, set);
+    if(type == int.class)
+      return new IntField(get, set);
+    if(type == long.class)
+      return new LongField(get, set);
+    if(type == float.class)
+      return new FloatField(get, set);
+    if(type == double.class)
+      return new DoubleField(get, set);
+    if(type == boolean.class)
+      return new BooleanField(get, set);
+    if(type == char.class)
+      return new CharField(get, set);
+    if(type == String.class)
+      return new ObjectField<>(get, set, Message::readString, Message::writeString);
+    if(type == NBTTagCompound.class)
+      return new ObjectField<>(get, set, Message::readNBT, Message::writeNBT);
+    if(type == ItemStack.class)
+      return new ObjectField<>(get, set, Message::readItemStack, Message::writeItemStack);
+    if(type == BlockPos.class)
+      return new ObjectField<>(get, set, Message::readBlockPos, Message::writeBlockPos);
+
+    // Not a type we can serialize
+    return null;
   }
 
-  private static <T extends Object>void map(Class<T> type, Reader<T> reader, Writer<T> writer) {
-    handlers.put(type, Pair.of(reader, writer));
-  }
+  private abstract static class FieldCodec {
+    final MethodHandle get;
+    final MethodHandle set;
 
-  private static byte readByte(ByteBuf buf) {
-    return buf.readByte();
-  }
+    FieldCodec(MethodHandle get, MethodHandle set) {
+      this.get = get;
+      this.set = set;
+    }
 
-  private static void writeByte(byte b, ByteBuf buf) {
-    buf.writeByte(b);
-  }
+    abstract void write(Message msg, ByteBuf buf) throws Throwable;
 
-  private static short readShort(ByteBuf buf) {
-    return buf.readShort();
+    abstract void read(Message msg, ByteBuf buf) throws Throwable;
   }
 
-  private static void writeShort(short s, ByteBuf buf) {
-    buf.writeShort(s);
-  }
+  private static final class ByteField extends FieldCodec {
+    ByteField(MethodHandle get, MethodHandle set) {
+      super(get, set);
+    }
 
-  private static int readInt(ByteBuf buf) {
-    return buf.readInt();
-  }
+    @Override
+    void write(Message msg, ByteBuf buf) throws Throwable {
+      buf.writeByte((byte) get.invokeExact(msg));
+    }
 
-  private static void writeInt(int i, ByteBuf buf) {
-    buf.writeInt(i);
+    @Override
+    void read(Message msg, ByteBuf buf) throws Throwable {
+      set.invokeExact(msg, buf.readByte());
+    }
   }
 
-  private static long readLong(ByteBuf buf) {
-    return buf.readLong();
-  }
+  private static final class ShortField extends FieldCodec {
+    ShortField(MethodHandle get, MethodHandle set) {
+      super(get, set);
+    }
 
-  private static void writeLong(long l, ByteBuf buf) {
-    buf.writeLong(l);
-  }
+    @Override
+    void write(Message msg, ByteBuf buf) throws Throwable {
+      buf.writeShort((short) get.invokeExact(msg));
+    }
 
-  private static float readFloat(ByteBuf buf) {
-    return buf.readFloat();
+    @Override
+    void read(Message msg, ByteBuf buf) throws Throwable {
+      set.invokeExact(msg, buf.readShort());
+    }
   }
 
-  private static void writeFloat(float f, ByteBuf buf) {
-    buf.writeFloat(f);
+  private static final class IntField extends FieldCodec {
+    IntField(MethodHandle get, MethodHandle set) {
+      super(get, set);
+    }
+
+    @Override
+    void write(Message msg, ByteBuf buf) throws Throwable {
+      buf.writeInt((int) get.invokeExact(msg));
+    }
+
+    @Override
+    void read(Message msg, ByteBuf buf) throws Throwable {
+      set.invokeExact(msg, buf.readInt());
+    }
   }
 
-  private static double readDouble(ByteBuf buf) {
-    return buf.readDouble();
+  private static final class LongField extends FieldCodec {
+    LongField(MethodHandle get, MethodHandle set) {
+      super(get, set);
+    }
+
+    @Override
+    void write(Message msg, ByteBuf buf) throws Throwable {
+      buf.writeLong((long) get.invokeExact(msg));
+    }
+
+    @Override
+    void read(Message msg, ByteBuf buf) throws Throwable {
+      set.invokeExact(msg, buf.readLong());
+    }
   }
 
-  private static void writeDouble(double d, ByteBuf buf) {
-    buf.writeDouble(d);
+  private static final class FloatField extends FieldCodec {
+    FloatField(MethodHandle get, MethodHandle set) {
+      super(get, set);
+    }
+
+    @Override
+    void write(Message msg, ByteBuf buf) throws Throwable {
+      buf.writeFloat((float) get.invokeExact(msg));
+    }
+
+    @Override
+    void read(Message msg, ByteBuf buf) throws Throwable {
+      set.invokeExact(msg, buf.readFloat());
+    }
   }
 
-  private static boolean readBoolean(ByteBuf buf) {
-    return buf.readBoolean();
+  private static final class DoubleField extends FieldCodec {
+    DoubleField(MethodHandle get, MethodHandle set) {
+      super(get, set);
+    }
+
+    @Override
+    void write(Message msg, ByteBuf buf) throws Throwable {
+      buf.writeDouble((double) get.invokeExact(msg));
+    }
+
+    @Override
+    void read(Message msg, ByteBuf buf) throws Throwable {
+      set.invokeExact(msg, buf.readDouble());
+    }
   }
 
-  private static void writeBoolean(boolean b, ByteBuf buf) {
-    buf.writeBoolean(b);
+  private static final class BooleanField extends FieldCodec {
+    BooleanField(MethodHandle get, MethodHandle set) {
+      super(get, set);
+    }
+
+    @Override
+    void write(Message msg, ByteBuf buf) throws Throwable {
+      buf.writeBoolean((boolean) get.invokeExact(msg));
+    }
+
+    @Override
+    void read(Message msg, ByteBuf buf) throws Throwable {
+      set.invokeExact(msg, buf.readBoolean());
+    }
   }
 
-  private static char readChar(ByteBuf buf) {
-    return buf.readChar();
+  private static final class CharField extends FieldCodec {
+    CharField(MethodHandle get, MethodHandle set) {
+      super(get, set);
+    }
+
+    @Override
+    void write(Message msg, ByteBuf buf) throws Throwable {
+      buf.writeChar((char) get.invokeExact(msg));
+    }
+
+    @Override
+    void read(Message msg, ByteBuf buf) throws Throwable {
+      set.invokeExact(msg, buf.readChar());
+    }
   }
 
-  private static void writeChar(char c, ByteBuf buf) {
-    buf.writeChar(c);
+  private static final class ObjectField<T> extends FieldCodec {
+    private final Reader<T> reader;
+    private final Writer<T> writer;
+
+    ObjectField(MethodHandle get, MethodHandle set, Reader<T> reader, Writer<T> writer) {
+      super(get, set);
+      this.reader = reader;
+      this.writer = writer;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    void write(Message msg, ByteBuf buf) throws Throwable {
+      writer.write((T) (Object) get.invokeExact(msg), buf);
+    }
+
+    @Override
+    void read(Message msg, ByteBuf buf) throws Throwable {
+      set.invokeExact(msg, (Object) reader.read(buf));
+    }
   }
 
   private static String readString(ByteBuf buf) {
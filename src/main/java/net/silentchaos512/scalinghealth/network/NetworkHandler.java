@@ -1,15 +1,33 @@
 package net.silentchaos512.scalinghealth.network;
 
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.common.network.NetworkRegistry;
 import net.minecraftforge.fml.common.network.simpleimpl.SimpleNetworkWrapper;
 import net.minecraftforge.fml.relauncher.Side;
 import net.silentchaos512.scalinghealth.ScalingHealth;
 import net.silentchaos512.scalinghealth.network.message.*;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public final class NetworkHandler {
     public static final SimpleNetworkWrapper INSTANCE = NetworkRegistry.INSTANCE.newSimpleChannel(ScalingHealth.MOD_ID_LOWER);
 
     private static int i = 0;
+    // Indexed by discriminator
+    private static final List<Class<? extends Message>> MESSAGE_CLASSES = new ArrayList<>();
+
+    // Messages waiting for the end of the tick. Only touched on the server thread.
+    private static final Map<EntityPlayerMP, Map<Object, Message>> QUEUED = new IdentityHashMap<>();
 
     private NetworkHandler() {}
 
@@ -19,9 +37,94 @@ public final class NetworkHandler {
         register(MessageWorldDataSync.class, Side.CLIENT);
         register(MessagePlaySound.class, Side.CLIENT);
         register(MessageDebugData.class, Side.CLIENT);
+        register(MessageBundle.class, Side.CLIENT);
     }
 
+    @SuppressWarnings("unchecked")
     private static void register(Class clazz, Side handlerSide) {
+        MESSAGE_CLASSES.add(clazz);
         INSTANCE.registerMessage(clazz, clazz, i++, handlerSide);
     }
+
+    public static int getDiscriminator(Class<? extends Message> clazz) {
+        int id = MESSAGE_CLASSES.indexOf(clazz);
+        if (id < 0)
+            throw new IllegalArgumentException("Unregistered message " + clazz.getName());
+        return id;
+    }
+
+    public static Message createMessage(int discriminator) {
+        if (discriminator < 0 || discriminator >= MESSAGE_CLASSES.size())
+            throw new IllegalArgumentException("Unknown message discriminator " + discriminator);
+        try {
+            return MESSAGE_CLASSES.get(discriminator).newInstance();
+        } catch (InstantiationException | IllegalAccessException ex) {
+            throw new RuntimeException("Could not create message " + MESSAGE_CLASSES.get(discriminator).getName(), ex);
+        }
+    }
+
+    /**
+     * Queues a message to be sent to the player at the end of the server tick. A queued message
+     * with the same class and {@link Message#getBundleKey} replaces the older one. If more than one
+     * message is queued for a player, they are all sent in a single {@link MessageBundle}. Must be
+     * called from the server thread.
+     */
+    public static void queue(Message message, EntityPlayerMP player) {
+        Map<Object, Message> messages = QUEUED.computeIfAbsent(player, p -> new LinkedHashMap<>());
+        Object key = message.getBundleKey();
+        if (key == null) {
+            // Never replaced, so use the message itself as the key
+            messages.put(message, message);
+            return;
+        }
+
+        key = Pair.of(message.getClass(), key);
+        // Remove first, so the replacement keeps its place in the queue order
+        Message older = messages.remove(key);
+        if (older != null)
+            message.mergeFrom(older);
+        messages.put(key, message);
+    }
+
+    /**
+     * Queues a message for every player tracking the entity, like
+     * {@link SimpleNetworkWrapper#sendToAllTracking(net.minecraftforge.fml.common.network.simpleimpl.IMessage, Entity)}.
+     */
+    public static void queueToAllTracking(Message message, Entity entity) {
+        if (!(entity.world instanceof WorldServer))
+            return;
+        for (EntityPlayer tracker : ((WorldServer) entity.world).getEntityTracker().getTrackingPlayers(entity)) {
+            if (tracker instanceof EntityPlayerMP)
+                queue(message, (EntityPlayerMP) tracker);
+        }
+    }
+
+    /**
+     * Sends everything queued, one packet per player.
+     */
+    public static void flush() {
+        if (QUEUED.isEmpty())
+            return;
+
+        for (Map.Entry<EntityPlayerMP, Map<Object, Message>> entry : QUEUED.entrySet()) {
+            EntityPlayerMP player = entry.getKey();
+            Map<Object, Message> messages = entry.getValue();
+            if (player.connection == null || player.hasDisconnected() || messages.isEmpty())
+                continue;
+
+            if (messages.size() == 1)
+                INSTANCE.sendTo(messages.values().iterator().next(), player);
+            else
+                INSTANCE.sendTo(new MessageBundle(messages.values()), player);
+        }
+        QUEUED.clear();
+    }
+
+    public static class EventHandler {
+        @SubscribeEvent
+        public void onServerTick(TickEvent.ServerTickEvent event) {
+            if (event.phase == TickEvent.Phase.END)
+                flush();
+        }
+    }
 }
@@ -0,0 +1,73 @@
+package net.silentchaos512.scalinghealth.network.message;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+import net.silentchaos512.lib.event.ClientTicks;
+import net.silentchaos512.scalinghealth.network.Message;
+import net.silentchaos512.scalinghealth.network.NetworkHandler;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The messages queued for one player during a tick, sent as a single packet (see
+ * {@link NetworkHandler#queue}). Each message is written as its discriminator, its length and its
+ * own bytes. The client applies all of them, in order, in one scheduled action.
+ */
+public class MessageBundle extends Message {
+    private final List<Message> messages;
+
+    @SuppressWarnings("unused")
+    public MessageBundle() {
+        this.messages = new ArrayList<>();
+    }
+
+    public MessageBundle(Collection<Message> messages) {
+        this.messages = new ArrayList<>(messages);
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        ByteBufUtils.writeVarInt(buf, messages.size(), 5);
+        for (Message message : messages) {
+            buf.writeByte(NetworkHandler.getDiscriminator(message.getClass()));
+            // Length is filled in once the message is written
+            int lengthIndex = buf.writerIndex();
+            buf.writeInt(0);
+            message.toBytes(buf);
+            buf.setInt(lengthIndex, buf.writerIndex() - lengthIndex - 4);
+        }
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        int count = ByteBufUtils.readVarInt(buf, 5);
+        for (int i = 0; i < count; ++i) {
+            Message message = NetworkHandler.createMessage(buf.readUnsignedByte());
+            int length = buf.readInt();
+            message.fromBytes(buf.readSlice(length));
+            messages.add(message);
+        }
+    }
+
+    @Override
+    @Nullable
+    @SideOnly(Side.CLIENT)
+    public IMessage handleMessage(MessageContext context) {
+        ClientTicks.scheduleAction(this::handleClient);
+        return null;
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public void handleClient() {
+        for (Message message : messages)
+            message.handleClient();
+    }
+}
@@ -1,14 +1,15 @@
 package net.silentchaos512.scalinghealth.network.message;
 
+import io.netty.buffer.ByteBuf;
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.world.World;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 import net.silentchaos512.lib.event.ClientTicks;
-import net.silentchaos512.scalinghealth.ScalingHealth;
 import net.silentchaos512.scalinghealth.config.Config;
 import net.silentchaos512.scalinghealth.network.Message;
 import net.silentchaos512.scalinghealth.utils.ModifierHandler;
@@ -17,57 +18,140 @@ import net.silentchaos512.scalinghealth.utils.SHPlayerDataHandler.PlayerData;
 
 import javax.annotation.Nullable;
 
+/**
+ * Syncs a player's data to clients. Only the fields in {@link #fields} are sent: the player's
+ * entity ID, a bitmask, then a varint for each included field. Difficulty and health are sent as
+ * fixed point values (see {@link #quantizeDifficulty} and {@link #quantizeHealth}).
+ */
 @SuppressWarnings("WeakerAccess")
 public class MessageDataSync extends Message {
-    public NBTTagCompound tags;
-    public String playerName;
+    public static final int DIFFICULTY = 1;
+    public static final int HEALTH = 2;
+    public static final int MAX_HEALTH = 4;
+    public static final int XP_LEVEL = 8;
+    public static final int ALL = DIFFICULTY | HEALTH | MAX_HEALTH | XP_LEVEL;
+
+    private static final int DIFFICULTY_SCALE = 100;
+    private static final int HEALTH_SCALE = 64;
+
+    public int entityId;
+    public int fields;
+    public int difficulty;
+    public int health;
+    public int maxHealth;
     public int experienceLevel;
 
     @SuppressWarnings("unused")
     public MessageDataSync() {}
 
     public MessageDataSync(PlayerData data, EntityPlayer player) {
-        tags = new NBTTagCompound();
-        data.writeToNBT(tags);
-        this.playerName = player.getName();
+        this(data, player, ALL);
+    }
+
+    public MessageDataSync(PlayerData data, EntityPlayer player, int fields) {
+        this.entityId = player.getEntityId();
+        this.fields = fields;
+        this.difficulty = quantizeDifficulty(data.getDifficulty());
+        this.health = quantizeHealth(data.getHealth());
+        this.maxHealth = quantizeHealth(data.getMaxHealth());
         this.experienceLevel = player.experienceLevel;
     }
 
+    public static int quantizeDifficulty(double value) {
+        return (int) Math.round(value * DIFFICULTY_SCALE);
+    }
+
+    public static int quantizeHealth(float value) {
+        return Math.round(value * HEALTH_SCALE);
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        ByteBufUtils.writeVarInt(buf, entityId, 5);
+        buf.writeByte(fields);
+        if ((fields & DIFFICULTY) != 0)
+            ByteBufUtils.writeVarInt(buf, (difficulty << 1) ^ (difficulty >> 31), 5); // Zigzag, may be negative
+        if ((fields & HEALTH) != 0)
+            ByteBufUtils.writeVarInt(buf, health, 5);
+        if ((fields & MAX_HEALTH) != 0)
+            ByteBufUtils.writeVarInt(buf, maxHealth, 5);
+        if ((fields & XP_LEVEL) != 0)
+            ByteBufUtils.writeVarInt(buf, experienceLevel, 5);
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        entityId = ByteBufUtils.readVarInt(buf, 5);
+        fields = buf.readUnsignedByte();
+        if ((fields & DIFFICULTY) != 0) {
+            int zigzag = ByteBufUtils.readVarInt(buf, 5);
+            difficulty = (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        if ((fields & HEALTH) != 0)
+            health = ByteBufUtils.readVarInt(buf, 5);
+        if ((fields & MAX_HEALTH) != 0)
+            maxHealth = ByteBufUtils.readVarInt(buf, 5);
+        if ((fields & XP_LEVEL) != 0)
+            experienceLevel = ByteBufUtils.readVarInt(buf, 5);
+    }
+
+    @Override
+    public Object getBundleKey() {
+        return entityId;
+    }
+
+    /**
+     * Keeps any fields the older message had that this one does not, so collapsing two partial
+     * syncs does not lose either.
+     */
+    @Override
+    public void mergeFrom(Message older) {
+        MessageDataSync msg = (MessageDataSync) older;
+        int missing = msg.fields & ~fields;
+        if ((missing & DIFFICULTY) != 0)
+            difficulty = msg.difficulty;
+        if ((missing & HEALTH) != 0)
+            health = msg.health;
+        if ((missing & MAX_HEALTH) != 0)
+            maxHealth = msg.maxHealth;
+        if ((missing & XP_LEVEL) != 0)
+            experienceLevel = msg.experienceLevel;
+        fields |= missing;
+    }
+
     @Override
     @Nullable
     @SideOnly(Side.CLIENT)
     public IMessage handleMessage(MessageContext context) {
-        ClientTicks.scheduleAction(() -> {
-            EntityPlayer player = getPlayerByName(playerName);
-            if (player != null) {
-                PlayerData data = SHPlayerDataHandler.get(player);
-                if (data != null) {
-                    data.readFromNBT(tags);
-
-                    // Set players health and max health.
-                    if (Config.Player.Health.allowModify) {
-                        ModifierHandler.setMaxHealth(player, data.getMaxHealth(), 0);
-                        if (data.getHealth() > 0f)
-                            player.setHealth(data.getHealth());
-                    }
-                }
-
-                player.experienceLevel = experienceLevel;
-            }
-        });
-
+        ClientTicks.scheduleAction(this::handleClient);
         return null;
     }
 
-    @Nullable
-    private static EntityPlayer getPlayerByName(String name) {
-        EntityPlayer localPlayer = ScalingHealth.proxy.getClientPlayer();
-        if (localPlayer != null) {
-            World world = localPlayer.world;
-            if (world != null) {
-                return world.getPlayerEntityByName(name);
+    @Override
+    @SideOnly(Side.CLIENT)
+    public void handleClient() {
+        Minecraft mc = Minecraft.getMinecraft();
+        if (mc.world == null) return;
+
+        Entity entity = mc.world.getEntityByID(entityId);
+        if (!(entity instanceof EntityPlayer)) return;
+        EntityPlayer player = (EntityPlayer) entity;
+
+        PlayerData data = SHPlayerDataHandler.get(player);
+        if (data != null) {
+            data.readSync(fields, (double) difficulty / DIFFICULTY_SCALE,
+                    (float) health / HEALTH_SCALE, (float) maxHealth / HEALTH_SCALE);
+
+            // Set players health and max health.
+            if (Config.Player.Health.allowModify) {
+                if ((fields & MAX_HEALTH) != 0)
+                    ModifierHandler.setMaxHealth(player, data.getMaxHealth(), 0);
+                if ((fields & HEALTH) != 0 && data.getHealth() > 0f)
+                    player.setHealth(data.getHealth());
             }
         }
-        return null;
+
+        if ((fields & XP_LEVEL) != 0)
+            player.experienceLevel = experienceLevel;
     }
 }
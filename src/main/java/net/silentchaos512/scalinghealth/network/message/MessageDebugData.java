@@ -21,7 +21,18 @@ public class MessageDebugData extends Message {
     @Nullable
     @SideOnly(Side.CLIENT)
     public IMessage handleMessage(MessageContext context) {
-        ClientTicks.scheduleAction(() -> DifficultyHandler.debugHandleSyncMessage(this));
+        ClientTicks.scheduleAction(this::handleClient);
         return null;
     }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public void handleClient() {
+        DifficultyHandler.debugHandleSyncMessage(this);
+    }
+
+    @Override
+    public Object getBundleKey() {
+        return Boolean.TRUE;
+    }
 }
@@ -33,22 +33,29 @@ public class MessageMarkBlight extends Message {
         this.isBlight = isBlight;
     }
 
+    @Override
+    public Object getBundleKey() {
+        return entityId;
+    }
+
     @Override
     @Nullable
     @SideOnly(Side.CLIENT)
     public IMessage handleMessage(MessageContext context) {
-        //noinspection OverlyLongLambda
-        ClientTicks.scheduleAction(() -> {
-            Minecraft mc = Minecraft.getMinecraft();
-            // Sometimes MC client instance is null, seems to happen when connecting to servers
-            //noinspection ConstantConditions -- mc can be null, IDEA says otherwise
-            if (mc == null || mc.world == null) return;
-
-            Entity entity = mc.world.getEntityByID(entityId);
-            if (entity instanceof EntityLivingBase)
-                BlightHandler.markBlight((EntityLivingBase) entity, this.isBlight);
-        });
-
+        ClientTicks.scheduleAction(this::handleClient);
         return null;
     }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public void handleClient() {
+        Minecraft mc = Minecraft.getMinecraft();
+        // Sometimes MC client instance is null, seems to happen when connecting to servers
+        //noinspection ConstantConditions -- mc can be null, IDEA says otherwise
+        if (mc == null || mc.world == null) return;
+
+        Entity entity = mc.world.getEntityByID(entityId);
+        if (entity instanceof EntityLivingBase)
+            BlightHandler.markBlight((EntityLivingBase) entity, this.isBlight);
+    }
 }
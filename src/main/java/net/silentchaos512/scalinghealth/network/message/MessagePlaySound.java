@@ -34,17 +34,20 @@ public class MessagePlaySound extends Message {
     @Nullable
     @SideOnly(Side.CLIENT)
     public IMessage handleMessage(MessageContext ctx) {
-        ClientTicks.scheduleAction(() -> {
-            EntityPlayer player = ScalingHealth.proxy.getClientPlayer();
-            if (player != null) {
-                SoundEvent sound = ForgeRegistries.SOUND_EVENTS.getValue(new ResourceLocation(soundId));
-                if (sound != null) {
-                    player.playSound(sound, volume, pitch);
-                }
-            }
-        });
-
+        ClientTicks.scheduleAction(this::handleClient);
         return null;
     }
 
+    @Override
+    @SideOnly(Side.CLIENT)
+    public void handleClient() {
+        EntityPlayer player = ScalingHealth.proxy.getClientPlayer();
+        if (player != null) {
+            SoundEvent sound = ForgeRegistries.SOUND_EVENTS.getValue(new ResourceLocation(soundId));
+            if (sound != null) {
+                player.playSound(sound, volume, pitch);
+            }
+        }
+    }
+
 }
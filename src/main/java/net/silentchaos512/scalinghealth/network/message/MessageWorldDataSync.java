@@ -24,20 +24,29 @@ public class MessageWorldDataSync extends Message {
         data.writeToNBT(tags);
     }
 
+    @Override
+    public Object getBundleKey() {
+        // Each sync carries the whole saved data, so only the newest one matters
+        return Boolean.TRUE;
+    }
+
     @Override
     @Nullable
     @SideOnly(Side.CLIENT)
     public IMessage handleMessage(MessageContext context) {
-        ClientTicks.scheduleAction(() -> {
-            EntityPlayer clientPlayer = ScalingHealth.proxy.getClientPlayer();
-            if (clientPlayer != null) {
-                ScalingHealthSavedData data = ScalingHealthSavedData.get(clientPlayer.world);
-                if (data != null) {
-                    data.readFromNBT(tags);
-                }
-            }
-        });
-
+        ClientTicks.scheduleAction(this::handleClient);
         return null;
     }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public void handleClient() {
+        EntityPlayer clientPlayer = ScalingHealth.proxy.getClientPlayer();
+        if (clientPlayer != null) {
+            ScalingHealthSavedData data = ScalingHealthSavedData.get(clientPlayer.world);
+            if (data != null) {
+                data.readFromNBT(tags);
+            }
+        }
+    }
 }
@@ -33,6 +33,7 @@ import net.silentchaos512.scalinghealth.ScalingHealth;
 import net.silentchaos512.scalinghealth.client.DifficultyDisplayHandler;
 import net.silentchaos512.scalinghealth.client.HeartDisplayHandler;
 import net.silentchaos512.scalinghealth.client.key.KeyTrackerSH;
+import net.silentchaos512.scalinghealth.client.render.entity.BlightFireRenderHandler;
 import net.silentchaos512.scalinghealth.client.render.particle.ParticleSH;
 import net.silentchaos512.scalinghealth.config.Config;
 import net.silentchaos512.scalinghealth.event.WitEventHandler;
@@ -48,6 +49,7 @@ public class ScalingHealthClientProxy extends ScalingHealthCommonProxy {
         MinecraftForge.EVENT_BUS.register(HeartDisplayHandler.INSTANCE);
         MinecraftForge.EVENT_BUS.register(DifficultyDisplayHandler.INSTANCE);
         MinecraftForge.EVENT_BUS.register(KeyTrackerSH.INSTANCE);
+        MinecraftForge.EVENT_BUS.register(BlightFireRenderHandler.INSTANCE);
 
         if (Loader.isModLoaded("wit") && Config.Client.enableWitSupport) {
             ScalingHealth.LOGGER.info("Registering WIT event handler (can be disabled in the config)");
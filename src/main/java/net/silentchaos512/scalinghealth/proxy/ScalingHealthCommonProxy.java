@@ -34,6 +34,7 @@ import net.minecraftforge.fml.common.registry.GameRegistry;
 import net.silentchaos512.lib.proxy.IProxy;
 import net.silentchaos512.lib.registry.SRegistry;
 import net.silentchaos512.lib.util.Color;
+import net.silentchaos512.scalinghealth.capability.MobState;
 import net.silentchaos512.scalinghealth.compat.morpheus.SHMorpheusCompat;
 import net.silentchaos512.scalinghealth.config.Config;
 import net.silentchaos512.scalinghealth.event.*;
@@ -43,6 +44,9 @@ import net.silentchaos512.scalinghealth.loot.ModLootStuff;
 import net.silentchaos512.scalinghealth.network.NetworkHandler;
 import net.silentchaos512.scalinghealth.network.message.MessagePlaySound;
 import net.silentchaos512.scalinghealth.utils.SHPlayerDataHandler;
+import net.silentchaos512.scalinghealth.world.BlightRegistry;
+import net.silentchaos512.scalinghealth.world.DifficultySnapshot;
+import net.silentchaos512.scalinghealth.world.PlayerSpatialIndex;
 import net.silentchaos512.scalinghealth.world.SHWorldGenerator;
 
 public class ScalingHealthCommonProxy implements IProxy {
@@ -62,11 +66,20 @@ public class ScalingHealthCommonProxy implements IProxy {
         DifficultyHandler.INSTANCE.initDefaultEquipment();
 
         NetworkHandler.init();
+        MobState.register();
+        SHPlayerDataHandler.registerCapability();
 
         MinecraftForge.EVENT_BUS.register(new ScalingHealthCommonEvents());
+        MinecraftForge.EVENT_BUS.register(new MobState.EventHandler());
         MinecraftForge.EVENT_BUS.register(new SHPlayerDataHandler.EventHandler());
+        MinecraftForge.EVENT_BUS.register(new PlayerSpatialIndex.EventHandler());
+        MinecraftForge.EVENT_BUS.register(new DifficultySnapshot.EventHandler());
         MinecraftForge.EVENT_BUS.register(DifficultyHandler.INSTANCE);
+        MinecraftForge.EVENT_BUS.register(SpawnProcessingQueue.INSTANCE);
+        MinecraftForge.EVENT_BUS.register(DifficultyHandler.INSTANCE.blightLoadout.getEnchantedPool());
         MinecraftForge.EVENT_BUS.register(BlightHandler.INSTANCE);
+        MinecraftForge.EVENT_BUS.register(new BlightRegistry.EventHandler());
+        MinecraftForge.EVENT_BUS.register(new NetworkHandler.EventHandler());
         MinecraftForge.EVENT_BUS.register(PetEventHandler.INSTANCE);
         MinecraftForge.EVENT_BUS.register(DamageScaling.INSTANCE);
 
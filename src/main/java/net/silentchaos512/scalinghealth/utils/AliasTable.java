@@ -0,0 +1,91 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.utils;
+
+import java.util.Random;
+
+/**
+ * Picks a random index with probability proportional to its weight in constant time, using
+ * Walker's alias method (Vose's construction). Each pick uses a single random number. Immutable
+ * once built.
+ */
+public final class AliasTable {
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * @param weights Non-negative weights, at least one of which is positive
+     */
+    public AliasTable(double[] weights) {
+        final int n = weights.length;
+        double total = 0;
+        for (double weight : weights) {
+            if (weight < 0 || Double.isNaN(weight))
+                throw new IllegalArgumentException("weights must be non-negative");
+            total += weight;
+        }
+        if (n == 0 || total <= 0)
+            throw new IllegalArgumentException("total weight must be positive");
+
+        probability = new double[n];
+        alias = new int[n];
+
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; ++i) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1)
+                small[smallCount++] = i;
+            else
+                large[largeCount++] = i;
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1)
+                small[smallCount++] = more;
+            else
+                large[largeCount++] = more;
+        }
+
+        // Whatever is left is 1, give or take rounding error
+        while (largeCount > 0)
+            probability[large[--largeCount]] = 1;
+        while (smallCount > 0)
+            probability[small[--smallCount]] = 1;
+    }
+
+    public int size() {
+        return probability.length;
+    }
+
+    public int sample(Random rand) {
+        double u = rand.nextDouble() * probability.length;
+        int index = Math.min((int) u, probability.length - 1);
+        return u - index < probability[index] ? index : alias[index];
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.utils;
+
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.init.MobEffects;
+import net.minecraft.potion.Potion;
+import net.minecraft.potion.PotionEffect;
+import net.minecraft.util.ResourceLocation;
+import net.silentchaos512.scalinghealth.ScalingHealth;
+import net.silentchaos512.scalinghealth.config.Config;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The potion effects given to blights: the effects with their own config options (Invisibility,
+ * Fire Resist, Speed and Strength), the "Potion Effects" list, and anything added through the API.
+ * These are compiled into an array the first time they are needed after the config loads.
+ * <p>
+ * {@link #apply} only adds effects that are missing, weaker or about to run out, and tells the
+ * caller how long it can wait before checking again.
+ */
+public final class BlightEffectList {
+    public static final BlightEffectList INSTANCE = new BlightEffectList();
+
+    /**
+     * Effects with this many ticks or fewer left are refreshed.
+     */
+    private static final int REFRESH_MARGIN = 100;
+    private static final int MIN_REFRESH_DELAY = 20;
+    /**
+     * Upper limit on the time between checks, so effects removed by other means come back.
+     */
+    public static final int MAX_REFRESH_DELAY = 1200;
+
+    private final List<Entry> added = new ArrayList<>();
+    @Nullable
+    private volatile Entry[] compiled;
+
+    private BlightEffectList() {}
+
+    public synchronized void add(Potion potion, int amplifier) {
+        added.add(new Entry(potion, amplifier));
+        compiled = null;
+    }
+
+    /**
+     * Discards the compiled effects. Called when the config is loaded.
+     */
+    public void invalidate() {
+        compiled = null;
+    }
+
+    /**
+     * Gives the entity any blight effects it is missing, or has less than {@link #REFRESH_MARGIN}
+     * ticks left on.
+     *
+     * @return The number of ticks until effects need to be checked again
+     */
+    public int apply(EntityLivingBase entity) {
+        int duration = Config.Mob.Blight.potionDuration;
+        if (duration < 0) {
+            duration = Integer.MAX_VALUE;
+        } else if (duration == 0) {
+            return MAX_REFRESH_DELAY;
+        }
+
+        final int margin = Math.min(REFRESH_MARGIN, duration / 4);
+        int shortest = Integer.MAX_VALUE;
+
+        for (Entry entry : getCompiled()) {
+            PotionEffect current = entity.getActivePotionEffect(entry.potion);
+            int remaining;
+            if (current == null || current.getAmplifier() < entry.amplifier || current.getDuration() <= margin) {
+                entity.addPotionEffect(new PotionEffect(entry.potion, duration, entry.amplifier, true, false));
+                remaining = duration;
+            } else {
+                remaining = current.getDuration();
+            }
+            shortest = Math.min(shortest, remaining);
+        }
+
+        if (shortest == Integer.MAX_VALUE)
+            return MAX_REFRESH_DELAY;
+        return Math.max(MIN_REFRESH_DELAY, Math.min(MAX_REFRESH_DELAY, shortest - margin));
+    }
+
+    private Entry[] getCompiled() {
+        Entry[] array = compiled;
+        if (array == null) {
+            synchronized (this) {
+                array = compile();
+                compiled = array;
+            }
+        }
+        return array;
+    }
+
+    private Entry[] compile() {
+        // One entry per potion; later entries replace earlier ones
+        Map<Potion, Entry> map = new LinkedHashMap<>();
+
+        if (Config.Mob.Blight.invisibility)
+            map.put(MobEffects.INVISIBILITY, new Entry(MobEffects.INVISIBILITY, 0));
+        if (Config.Mob.Blight.fireResist)
+            map.put(MobEffects.FIRE_RESISTANCE, new Entry(MobEffects.FIRE_RESISTANCE, 0));
+        if (Config.Mob.Blight.speedAmp > -1)
+            map.put(MobEffects.SPEED, new Entry(MobEffects.SPEED, Config.Mob.Blight.speedAmp));
+        if (Config.Mob.Blight.strengthAmp > -1)
+            map.put(MobEffects.STRENGTH, new Entry(MobEffects.STRENGTH, Config.Mob.Blight.strengthAmp));
+
+        for (String line : Config.Mob.Blight.effects) {
+            Entry entry = parse(line);
+            if (entry != null)
+                map.put(entry.potion, entry);
+        }
+
+        for (Entry entry : added)
+            map.put(entry.potion, entry);
+
+        return map.values().toArray(new Entry[0]);
+    }
+
+    @Nullable
+    private static Entry parse(String line) {
+        String[] params = line.split(",");
+        if (params.length != 2) {
+            ScalingHealth.logHelper.warn("Blight potion effects: malformed line (need 2 comma-separated values): "
+                    + line + ". Ignoring entire line.");
+            return null;
+        }
+
+        Potion potion = Potion.REGISTRY.getObject(new ResourceLocation(params[0].trim()));
+        if (potion == null) {
+            ScalingHealth.logHelper.warn("Blight potion effects: potion \"" + params[0] + "\" does not exist.");
+            return null;
+        }
+        try {
+            int level = Integer.parseInt(params[1].trim());
+            return new Entry(potion, Math.max(0, level - 1));
+        } catch (NumberFormatException ex) {
+            ScalingHealth.logHelper.warn("Blight potion effects: could not parse level as integer. Ignoring entire line: " + line);
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        final Potion potion;
+        final int amplifier;
+
+        Entry(Potion potion, int amplifier) {
+            this.potion = potion;
+            this.amplifier = amplifier;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.utils;
+
+import net.minecraft.enchantment.EnchantmentHelper;
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.inventory.EntityEquipmentSlot;
+import net.minecraft.item.ItemStack;
+import net.silentchaos512.scalinghealth.config.Config;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Picks blight equipment. The tier is drawn from an {@link AliasTable} built from the "Highest
+ * Common Tier" and "Tier Up Chance" configs (a uniformly chosen common tier, plus a chance to go up
+ * for each tier above it), then each slot draws from its {@link EquipmentTierMap}. A whole
+ * loadout is generated in one pass from a single {@link Random}.
+ */
+public class BlightLoadoutGenerator {
+    public static final int TIER_COUNT = 5;
+
+    private static final EntityEquipmentSlot[] ARMOR_SLOTS = {EntityEquipmentSlot.HEAD,
+            EntityEquipmentSlot.CHEST, EntityEquipmentSlot.LEGS, EntityEquipmentSlot.FEET};
+
+    private final Map<EntityEquipmentSlot, EquipmentTierMap> maps = new EnumMap<>(EntityEquipmentSlot.class);
+    private final EnchantedEquipmentPool enchantedPool;
+
+    private volatile TierTable tierTable;
+
+    public BlightLoadoutGenerator() {
+        for (EntityEquipmentSlot slot : EntityEquipmentSlot.values()) {
+            maps.put(slot, new EquipmentTierMap(TIER_COUNT, slot));
+        }
+        enchantedPool = new EnchantedEquipmentPool(this);
+    }
+
+    public EquipmentTierMap getMap(EntityEquipmentSlot slot) {
+        return maps.get(slot);
+    }
+
+    public EnchantedEquipmentPool getEnchantedPool() {
+        return enchantedPool;
+    }
+
+    public void add(StackProducer producer, EntityEquipmentSlot slot, int tier, double weight) {
+        maps.get(slot).put(producer, tier, weight);
+    }
+
+    /**
+     * Gives the entity a random set of enchanted equipment. Slots that already hold something are
+     * left alone. Every blight gets a chance at a helmet, and each following armor piece is only
+     * tried if the one before it was. The off hand is likewise only tried after the main hand.
+     */
+    public void equip(EntityLivingBase entity, Random rand) {
+        int tier = getTierTable().table.sample(rand);
+
+        float pieceChance = Config.BLIGHT_EQUIPMENT_ARMOR_PIECE_CHANCE;
+        for (EntityEquipmentSlot slot : ARMOR_SLOTS) {
+            if (slot != EntityEquipmentSlot.HEAD && rand.nextFloat() > pieceChance)
+                break;
+            equipSlot(entity, slot, tier, rand);
+        }
+
+        pieceChance = Config.BLIGHT_EQUIPMENT_HAND_PIECE_CHANCE;
+        if (rand.nextFloat() < pieceChance) {
+            equipSlot(entity, EntityEquipmentSlot.MAINHAND, tier, rand);
+            if (rand.nextFloat() < pieceChance) {
+                equipSlot(entity, EntityEquipmentSlot.OFFHAND, tier, rand);
+            }
+        }
+    }
+
+    private void equipSlot(EntityLivingBase entity, EntityEquipmentSlot slot, int tier, Random rand) {
+        if (entity.getItemStackFromSlot(slot).isEmpty()) {
+            ItemStack stack = enchantedPool.take(slot, tier);
+            if (stack.isEmpty()) {
+                stack = maps.get(slot).getRandom(tier, rand);
+                if (stack.isEmpty())
+                    return;
+                EnchantmentHelper.addRandomEnchantment(rand, stack, EnchantedEquipmentPool.ENCHANT_LEVEL, false);
+            }
+            entity.setItemStackToSlot(slot, stack);
+        }
+    }
+
+    private TierTable getTierTable() {
+        TierTable t = tierTable;
+        if (t == null || t.commonTier != Config.BLIGHT_EQUIPMENT_HIGHEST_COMMON_TIER
+                || t.tierUpChance != Config.BLIGHT_EQUIPMENT_TIER_UP_CHANCE) {
+            t = new TierTable(Config.BLIGHT_EQUIPMENT_HIGHEST_COMMON_TIER, Config.BLIGHT_EQUIPMENT_TIER_UP_CHANCE);
+            tierTable = t;
+        }
+        return t;
+    }
+
+    private static final class TierTable {
+        final int commonTier;
+        final float tierUpChance;
+        final AliasTable table;
+
+        TierTable(int commonTier, float tierUpChance) {
+            this.commonTier = commonTier;
+            this.tierUpChance = tierUpChance;
+
+            // Common tier is uniform on [0, commonTier], then each of the remaining tiers is a
+            // separate chance to go up one (a binomial distribution)
+            final int highestTier = TIER_COUNT - 1;
+            final int tierUps = highestTier - commonTier;
+            double[] weights = new double[TIER_COUNT];
+            for (int base = 0; base <= commonTier; ++base) {
+                double ways = 1;
+                for (int k = 0; k <= tierUps; ++k) {
+                    double chance = ways * Math.pow(tierUpChance, k) * Math.pow(1 - tierUpChance, tierUps - k);
+                    weights[Math.min(base + k, highestTier)] += chance;
+                    ways = ways * (tierUps - k) / (k + 1);
+                }
+            }
+            this.table = new AliasTable(weights);
+        }
+    }
+}
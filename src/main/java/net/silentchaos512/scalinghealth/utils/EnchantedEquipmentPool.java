@@ -0,0 +1,165 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.utils;
+
+import net.minecraft.enchantment.EnchantmentHelper;
+import net.minecraft.init.Items;
+import net.minecraft.inventory.EntityEquipmentSlot;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.common.gameevent.TickEvent.ServerTickEvent;
+import net.silentchaos512.scalinghealth.ScalingHealth;
+import net.silentchaos512.scalinghealth.config.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Blight equipment that has already been enchanted, so blights spawning in bulk do not have to
+ * roll enchantments on the server thread. There is a pool for each slot and tier. Once a second,
+ * each pool's target size is set from how many stacks were taken recently. The missing stacks are
+ * created on the server thread (creating stacks runs other mods' code and fires capability
+ * events), and a background thread only rolls and applies their enchantments. Blights fall back
+ * to enchanting inline when their pool is empty.
+ */
+public final class EnchantedEquipmentPool {
+    public static final int ENCHANT_LEVEL = 30;
+
+    // Stacks kept per pool, in seconds of recent demand
+    private static final int BUFFER_SECONDS = 10;
+    private static final int MAX_POOL_SIZE = 32;
+    private static final double RATE_SMOOTHING = 0.2;
+
+    private final BlightLoadoutGenerator generator;
+    private final Pool[] pools;
+    // Only used by the worker thread
+    private final Random workerRandom = new Random();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Scaling Health Equipment Pool");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private int ticks;
+
+    EnchantedEquipmentPool(BlightLoadoutGenerator generator) {
+        this.generator = generator;
+        EntityEquipmentSlot[] slots = EntityEquipmentSlot.values();
+        this.pools = new Pool[slots.length * BlightLoadoutGenerator.TIER_COUNT];
+        for (EntityEquipmentSlot slot : slots) {
+            for (int tier = 0; tier < BlightLoadoutGenerator.TIER_COUNT; ++tier) {
+                pools[index(slot, tier)] = new Pool(slot, tier);
+            }
+        }
+    }
+
+    /**
+     * Takes an enchanted stack from the pool.
+     *
+     * @return The stack, or {@link ItemStack#EMPTY} if the pool is empty or disabled
+     */
+    public ItemStack take(EntityEquipmentSlot slot, int tier) {
+        if (!Config.Mob.Blight.preEnchantEquipment)
+            return ItemStack.EMPTY;
+
+        Pool pool = pools[index(slot, tier)];
+        ++pool.taken;
+        ItemStack stack = pool.stacks.poll();
+        if (stack == null)
+            return ItemStack.EMPTY;
+        pool.size.decrementAndGet();
+        return stack;
+    }
+
+    @SubscribeEvent
+    public void onServerTick(ServerTickEvent event) {
+        if (event.phase != Phase.END || ++ticks % 20 != 0 || !Config.Mob.Blight.preEnchantEquipment)
+            return;
+
+        for (Pool pool : pools) {
+            pool.rate += RATE_SMOOTHING * (pool.taken - pool.rate);
+            pool.taken = 0;
+
+            int target = Math.min(MAX_POOL_SIZE, (int) Math.ceil(pool.rate * BUFFER_SECONDS));
+            int missing = target - pool.size.get();
+            if (missing > 0 && pool.refilling.compareAndSet(false, true)) {
+                List<ItemStack> stacks = createStacks(pool, missing);
+                if (stacks.isEmpty())
+                    pool.refilling.set(false);
+                else
+                    worker.execute(() -> enchant(pool, stacks));
+            }
+        }
+    }
+
+    private List<ItemStack> createStacks(Pool pool, int count) {
+        EquipmentTierMap map = generator.getMap(pool.slot);
+        List<ItemStack> list = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            ItemStack stack = map.getRandom(pool.tier);
+            // Enchanting a book replaces the stack, which must not happen off the server thread
+            if (stack.isEmpty() || stack.getItem() == Items.BOOK)
+                break;
+            list.add(stack);
+        }
+        return list;
+    }
+
+    private void enchant(Pool pool, List<ItemStack> stacks) {
+        try {
+            for (ItemStack stack : stacks) {
+                EnchantmentHelper.addRandomEnchantment(workerRandom, stack, ENCHANT_LEVEL, false);
+                pool.stacks.add(stack);
+                pool.size.incrementAndGet();
+            }
+        } catch (Exception ex) {
+            ScalingHealth.logHelper.warn(ex, "Failed to refill blight equipment pool ({}, tier {})", pool.slot, pool.tier);
+        } finally {
+            pool.refilling.set(false);
+        }
+    }
+
+    private static int index(EntityEquipmentSlot slot, int tier) {
+        return slot.ordinal() * BlightLoadoutGenerator.TIER_COUNT + tier;
+    }
+
+    private static final class Pool {
+        final EntityEquipmentSlot slot;
+        final int tier;
+        final Queue<ItemStack> stacks = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicBoolean refilling = new AtomicBoolean();
+        // Server thread only
+        int taken;
+        double rate;
+
+        Pool(EntityEquipmentSlot slot, int tier) {
+            this.slot = slot;
+            this.tier = tier;
+        }
+    }
+}
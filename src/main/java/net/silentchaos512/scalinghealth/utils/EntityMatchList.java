@@ -23,31 +23,34 @@ import net.minecraft.entity.EntityList;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.common.config.Configuration;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.regex.Matcher;
+import javax.annotation.Nullable;
+import java.util.*;
 import java.util.regex.Pattern;
 
 /**
- * Used to match entities to a list loaded from config.
+ * Used to match entities to a list loaded from config. Entries can be entity IDs (the namespace
+ * defaults to "minecraft"), old entity names, "modid:*" to match a whole mod, or other patterns
+ * using "*" as a wildcard. The list is compiled the first time it is used after changing, and
+ * results are remembered per entity class.
  *
  * @deprecated Will remove in 1.13, as Silent Lib has a more fleshed-out equivalent
  */
 @Deprecated
 public class EntityMatchList {
-    private static final Pattern WILDCARD_PATTERN = Pattern.compile("\\*");
-
     private final List<String> list = new ArrayList<>();
     private boolean whitelist = false;
+    @Nullable
+    private volatile Matcher matcher;
 
     public void add(String str) {
         list.add(str);
+        matcher = null;
     }
 
     @Deprecated
     public void clear() {
         list.clear();
+        matcher = null;
     }
 
     public boolean matches(Entity entity) {
@@ -57,24 +60,12 @@ public class EntityMatchList {
 
     @Deprecated
     public boolean contains(Entity entity) {
-        ResourceLocation resource = EntityList.getKey(entity);
-        if (resource == null)
-            return false;
-
-        String id = resource.toString();
-        String idOld = EntityList.getEntityString(entity);
-
-        for (String entry : list) {
-            if (entry.endsWith("*")) {
-                String regex = WILDCARD_PATTERN.matcher(entry).replaceAll(Matcher.quoteReplacement(".*"));
-                return id.matches("(?i)" + regex);
-            }
-            if (entry.equalsIgnoreCase(id) || entry.equalsIgnoreCase(idOld) || entry.equalsIgnoreCase("minecraft:" + id)) {
-                return true;
-            }
+        Matcher m = matcher;
+        if (m == null) {
+            m = new Matcher(list);
+            matcher = m;
         }
-
-        return false;
+        return m.contains(entity);
     }
 
     public void loadConfig(Configuration config, String name, String category, String[] defaults, boolean defaultWhitelist, String comment) {
@@ -84,4 +75,65 @@ public class EntityMatchList {
         this.whitelist = config.getBoolean(name + " IsWhitelist", category, defaultWhitelist,
                 "If true, the list is a whitelist. Otherwise it is a blacklist.");
     }
+
+    private static final class Matcher {
+        private final Set<ResourceLocation> ids = new HashSet<>();
+        private final Set<String> oldNames = new HashSet<>();
+        private final Set<String> namespaces = new HashSet<>();
+        @Nullable
+        private final Pattern pattern;
+        private final Map<Class<? extends Entity>, Boolean> cache = new IdentityHashMap<>();
+
+        Matcher(List<String> entries) {
+            StringBuilder regex = new StringBuilder();
+            for (String entry : entries) {
+                String str = entry.trim().toLowerCase(Locale.ROOT);
+                if (str.isEmpty())
+                    continue;
+
+                int wildcard = str.indexOf('*');
+                if (wildcard < 0) {
+                    ids.add(new ResourceLocation(str));
+                    oldNames.add(str);
+                } else if (str.endsWith(":*") && wildcard == str.length() - 1) {
+                    namespaces.add(str.substring(0, str.length() - 2));
+                } else {
+                    if (regex.length() > 0)
+                        regex.append('|');
+                    for (String part : str.split("\\*", -1)) {
+                        if (!part.isEmpty())
+                            regex.append(Pattern.quote(part));
+                        regex.append(".*");
+                    }
+                    // One too many
+                    regex.setLength(regex.length() - 2);
+                }
+            }
+            pattern = regex.length() > 0 ? Pattern.compile(regex.toString()) : null;
+        }
+
+        boolean contains(Entity entity) {
+            Class<? extends Entity> clazz = entity.getClass();
+            Boolean result = cache.get(clazz);
+            if (result == null) {
+                result = compute(entity);
+                cache.put(clazz, result);
+            }
+            return result;
+        }
+
+        private boolean compute(Entity entity) {
+            ResourceLocation resource = EntityList.getKey(entity);
+            if (resource == null)
+                return false;
+            if (ids.contains(resource) || namespaces.contains(resource.getNamespace()))
+                return true;
+
+            String idOld = EntityList.getEntityString(entity);
+            if (idOld != null && oldNames.contains(idOld.toLowerCase(Locale.ROOT)))
+                return true;
+
+            return pattern != null && pattern.matcher(resource.toString()).matches();
+        }
+    }
 }
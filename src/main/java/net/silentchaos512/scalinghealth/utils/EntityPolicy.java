@@ -0,0 +1,89 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.utils;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.monster.IMob;
+import net.silentchaos512.scalinghealth.config.Config;
+import net.silentchaos512.scalinghealth.utils.EntityDifficultyChangeList.DifficultyChanges;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The config-derived facts about an entity type: whether it can get extra health or become a
+ * blight, whether it always becomes a blight, whether it gets bonus damage and how killing it
+ * changes difficulty. Built the first time each entity class is seen and thrown away when the
+ * config is reloaded, so spawns and deaths only do a single map lookup.
+ * <p>
+ * Anything that depends on the individual entity (dimension, whether it is already a blight) is
+ * not included.
+ */
+public final class EntityPolicy {
+    // Replaced rather than cleared, since the config can be reloaded from the client thread
+    private static volatile Map<Class<? extends Entity>, EntityPolicy> policies = new IdentityHashMap<>();
+
+    public final boolean isBoss;
+    public final boolean isHostile;
+    public final boolean healthBlacklisted;
+    public final boolean blightBlacklisted;
+    public final boolean alwaysBlight;
+    public final boolean damageBonusBlacklisted;
+    public final DifficultyChanges killChanges;
+
+    private EntityPolicy(Entity entity) {
+        isBoss = !entity.isNonBoss();
+        isHostile = entity instanceof IMob;
+        boolean isPassive = !isHostile;
+
+        healthBlacklisted = (isHostile && (Config.Mob.Health.hostileHealthMultiplier == 0 || !Config.Mob.Health.allowHostile))
+                || (isPassive && (Config.Mob.Health.peacefulHealthMultiplier == 0 || !Config.Mob.Health.allowPeaceful))
+                || (isBoss && (Config.Mob.Health.hostileHealthMultiplier == 0 || !Config.Mob.Health.allowBoss))
+                || Config.Mob.Health.mobBlacklist.contains(entity);
+
+        blightBlacklisted = Config.Mob.Blight.blacklist.contains(entity)
+                || (isHostile && Config.Mob.Blight.blacklistHostiles)
+                || (isPassive && Config.Mob.Blight.blacklistPassives)
+                || (isBoss && Config.Mob.Blight.blacklistBosses);
+
+        alwaysBlight = Config.Mob.Blight.blightAlways && Config.Mob.Blight.blightAllList.matches(entity);
+        damageBonusBlacklisted = Config.Mob.damageBonusBlacklist.contains(entity);
+        killChanges = Config.Difficulty.DIFFICULTY_PER_KILL_BY_MOB.get(entity);
+    }
+
+    /**
+     * Gets the policy for the entity's class, building it from the current config if needed.
+     */
+    public static EntityPolicy get(Entity entity) {
+        Map<Class<? extends Entity>, EntityPolicy> map = policies;
+        EntityPolicy policy = map.get(entity.getClass());
+        if (policy == null) {
+            policy = new EntityPolicy(entity);
+            map.put(entity.getClass(), policy);
+        }
+        return policy;
+    }
+
+    /**
+     * Discards all policies. Called when the config is loaded.
+     */
+    public static void clearAll() {
+        policies = new IdentityHashMap<>();
+    }
+}
@@ -22,23 +22,35 @@ import net.minecraft.inventory.EntityEquipmentSlot;
 import net.minecraft.item.ItemStack;
 import net.silentchaos512.scalinghealth.ScalingHealth;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+/**
+ * Equipment for one slot, grouped by tier. Items in a tier are picked with an {@link AliasTable}
+ * over their weights, which is rebuilt the first time the map is used after changing. Every call
+ * returns a new stack, so callers are free to modify it (enchant it, for example). Stacks should
+ * only be taken on the server thread, since creating them can run other mods' code.
+ */
 public class EquipmentTierMap {
     public final int tierCount;
     public final EntityEquipmentSlot slot;
 
     List<List<StackProducer>> sets;
+    private final List<List<Double>> weights;
+    @Nullable
+    private volatile AliasTable[] tables;
 
     public EquipmentTierMap(int tierCount, EntityEquipmentSlot slot) {
         this.tierCount = tierCount;
         this.slot = slot;
 
         sets = new ArrayList<>();
+        weights = new ArrayList<>();
         for (int i = 0; i < tierCount; ++i) {
             sets.add(new ArrayList<>());
+            weights.add(new ArrayList<>());
         }
     }
 
@@ -47,27 +59,43 @@ public class EquipmentTierMap {
     }
 
     public void put(StackProducer producer, int tier) {
+        put(producer, tier, 1);
+    }
+
+    public synchronized void put(StackProducer producer, int tier, double weight) {
         if (tier < 0 || tier >= tierCount) {
             throw new IllegalArgumentException("tier must be between 0 and " + tierCount);
         }
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive");
+        }
 
         // TODO: We could also check the stack is valid for the slot.
 
         sets.get(tier).add(producer);
+        weights.get(tier).add(weight);
+        tables = null;
     }
 
     public ItemStack getRandom(int tier) {
+        return getRandom(tier, ScalingHealth.random);
+    }
+
+    public ItemStack getRandom(int tier, Random rand) {
         if (tier < 0 || tier >= tierCount) {
             throw new IllegalArgumentException("tier must be between 0 and " + tierCount);
         }
 
-        List<StackProducer> list = sets.get(tier);
-        if (list.isEmpty()) {
+        AliasTable[] t = tables;
+        if (t == null) {
+            t = buildTables();
+        }
+        AliasTable table = t[tier];
+        if (table == null) {
             return ItemStack.EMPTY;
         }
 
-        Random rand = ScalingHealth.random;
-        return list.get(rand.nextInt(list.size())).get(rand);
+        return sets.get(tier).get(table.sample(rand)).get(rand).copy();
     }
 
     public ItemStack get(int tier, int index) {
@@ -83,6 +111,21 @@ public class EquipmentTierMap {
             throw new IllegalArgumentException("index must be between 0 and " + list.size());
         }
 
-        return list.get(index).get(ScalingHealth.random);
+        return list.get(index).get(ScalingHealth.random).copy();
+    }
+
+    private synchronized AliasTable[] buildTables() {
+        AliasTable[] t = tables;
+        if (t == null) {
+            t = new AliasTable[tierCount];
+            for (int tier = 0; tier < tierCount; ++tier) {
+                List<Double> list = weights.get(tier);
+                if (!list.isEmpty()) {
+                    t[tier] = new AliasTable(list.stream().mapToDouble(Double::doubleValue).toArray());
+                }
+            }
+            tables = t;
+        }
+        return t;
     }
 }
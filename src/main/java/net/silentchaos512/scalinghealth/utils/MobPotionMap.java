@@ -20,45 +20,130 @@ package net.silentchaos512.scalinghealth.utils;
 
 import net.minecraft.potion.Potion;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 
+/**
+ * The potion effects mobs can spawn with. Entries are compiled into an immutable {@link Sampler}
+ * the first time one is picked after the map changes, so picking is allocation-free and safe to
+ * do from any thread.
+ */
 public class MobPotionMap {
-    List<PotionEntry> list = new ArrayList<>();
-    List<PotionEntry> temp = new ArrayList<>();
+    private final List<PotionEntry> list = new ArrayList<>();
+    @Nullable
+    private volatile Sampler sampler;
+
+    public void put(Potion potion, int cost, int amplifier) {
+        put(potion, cost, amplifier, 1);
+    }
 
-    public void put(Potion potion, int weight, int amplifier) {
-        list.add(new PotionEntry(potion, weight, amplifier));
+    public synchronized void put(Potion potion, int cost, int amplifier, int weight) {
+        list.add(new PotionEntry(potion, cost, amplifier, weight));
+        sampler = null;
     }
 
-    public void clear() {
+    public synchronized void clear() {
         list.clear();
+        sampler = null;
     }
 
+    /**
+     * Picks a random potion with a cost no greater than {@code maxWeight}. Entries are chosen in
+     * proportion to their weights.
+     *
+     * @return The potion entry, or null if no potion is cheap enough
+     */
+    @Nullable
     public PotionEntry getRandom(Random rand, int maxWeight) {
-        temp.clear();
-        for (PotionEntry pot : list) {
-            if (pot.cost <= maxWeight) {
-                temp.add(pot);
-            }
+        Sampler s = sampler;
+        if (s == null) {
+            s = rebuild();
         }
+        return s.getRandom(rand, maxWeight);
+    }
 
-        if (temp.isEmpty()) {
-            return null;
+    private synchronized Sampler rebuild() {
+        Sampler s = sampler;
+        if (s == null) {
+            s = new Sampler(list);
+            sampler = s;
         }
-        return temp.get(rand.nextInt(temp.size()));
+        return s;
     }
 
     public static class PotionEntry {
         public final Potion potion;
         public final int cost;
         public final int amplifier;
+        public final int weight;
 
         public PotionEntry(Potion potion, int cost, int amplifier) {
+            this(potion, cost, amplifier, 1);
+        }
+
+        public PotionEntry(Potion potion, int cost, int amplifier, int weight) {
             this.potion = potion;
             this.cost = cost;
             this.amplifier = amplifier;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Entries sorted by cost, with a running total of weights. The entries a mob can afford are
+     * always a prefix of the array, found with a binary search on cost; a second binary search on
+     * the running totals picks the weighted entry.
+     */
+    private static final class Sampler {
+        private final PotionEntry[] entries;
+        private final int[] costs;
+        private final int[] totalWeights;
+
+        Sampler(List<PotionEntry> list) {
+            PotionEntry[] sorted = list.stream()
+                    .filter(e -> e.weight > 0)
+                    .sorted(Comparator.comparingInt(e -> e.cost))
+                    .toArray(PotionEntry[]::new);
+
+            entries = sorted;
+            costs = new int[sorted.length];
+            totalWeights = new int[sorted.length];
+            int total = 0;
+            for (int i = 0; i < sorted.length; ++i) {
+                costs[i] = sorted[i].cost;
+                total += sorted[i].weight;
+                totalWeights[i] = total;
+            }
+        }
+
+        @Nullable
+        PotionEntry getRandom(Random rand, int maxCost) {
+            int count = upperBound(costs, costs.length, maxCost);
+            if (count == 0) {
+                return null;
+            }
+            int roll = rand.nextInt(totalWeights[count - 1]);
+            return entries[upperBound(totalWeights, count, roll)];
+        }
+
+        /**
+         * @return The number of leading values (out of the first {@code length}) that are less
+         * than or equal to {@code key}
+         */
+        private static int upperBound(int[] values, int length, int key) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] <= key)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            return low;
         }
     }
 }
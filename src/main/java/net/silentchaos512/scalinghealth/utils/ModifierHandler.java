@@ -18,16 +18,26 @@
 
 package net.silentchaos512.scalinghealth.utils;
 
+import gnu.trove.map.hash.TLongObjectHashMap;
 import net.minecraft.entity.EntityLivingBase;
 import net.minecraft.entity.SharedMonsterAttributes;
 import net.minecraft.entity.ai.attributes.AttributeModifier;
+import net.minecraft.entity.ai.attributes.IAttribute;
 import net.minecraft.entity.ai.attributes.IAttributeInstance;
 import net.minecraft.entity.player.EntityPlayer;
 import net.silentchaos512.scalinghealth.ScalingHealth;
 import net.silentchaos512.scalinghealth.config.Config;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Applies Scaling Health's attribute modifiers. Updates that would not change a modifier are
+ * skipped, since every removal or addition marks the attribute for syncing to clients. Modifiers
+ * are immutable, so they are shared between entities with the same amount (rounded to
+ * {@link #AMOUNT_PRECISION}).
+ */
 public class ModifierHandler {
 
     public static final UUID MODIFIER_ID_HEALTH = UUID.fromString("c0bef565-35f6-4dc5-bb4c-3644c382e6ce");
@@ -35,22 +45,74 @@ public class ModifierHandler {
     public static final String MODIFIER_NAME_HEALTH = ScalingHealth.MOD_ID_OLD + ".HealthModifier";
     public static final String MODIFIER_NAME_DAMAGE = ScalingHealth.MOD_ID_OLD + ".DamageModifier";
 
-    private static void setModifier(IAttributeInstance attr, UUID id, String name, double amount, int op) {
-        if (attr == null)
-            return;
+    // Modifier amounts are rounded to a multiple of this
+    public static final double AMOUNT_PRECISION = 1.0 / 1024;
+    // Mob modifiers have all sorts of amounts, so don't let the cache grow forever
+    private static final int MAX_INTERNED = 4096;
+    // Modifier ID -> packed operation and rounded amount (see intern) -> modifier. Guarded by itself,
+    // since the client and integrated server threads both apply modifiers.
+    private static final Map<UUID, TLongObjectHashMap<AttributeModifier>> INTERNED = new HashMap<>();
 
-        // Calculate the difference for the modifier.
-        double normalValue = attr.getBaseValue();
-        double difference = amount - normalValue;
+    private static AttributeModifier intern(UUID id, String name, double amount, int op) {
+        long roundedAmount = Math.round(amount / AMOUNT_PRECISION);
+        // Operations are 0 to 2, so they fit in the low two bits
+        long key = (roundedAmount << 2) | (op & 3);
+        synchronized (INTERNED) {
+            TLongObjectHashMap<AttributeModifier> mods = INTERNED.get(id);
+            if (mods == null) {
+                mods = new TLongObjectHashMap<>();
+                INTERNED.put(id, mods);
+            }
+            AttributeModifier mod = mods.get(key);
+            if (mod == null || mod.getOperation() != op) {
+                if (mods.size() >= MAX_INTERNED)
+                    mods.clear();
+                mod = new AttributeModifier(id, name, roundedAmount * AMOUNT_PRECISION, op);
+                mods.put(key, mod);
+            }
+            return mod;
+        }
+    }
 
-        // Get current and new modifier.
+    /**
+     * Sets the modifier with the given ID to the amount and operation, unless it already has them.
+     *
+     * @return True if the attribute was changed
+     */
+    public static boolean applyModifier(IAttributeInstance attr, UUID id, String name, double amount, int op) {
+        AttributeModifier newMod = intern(id, name, amount, op);
         AttributeModifier mod = attr.getModifier(id);
-        AttributeModifier newMod = new AttributeModifier(id, name, difference, op);
-
-        // Remove the old, apply the new.
-        if (mod != null)
+        if (mod != null) {
+            if (mod == newMod || (mod.getOperation() == op && mod.getAmount() == newMod.getAmount()))
+                return false;
             attr.removeModifier(mod);
+        }
         attr.applyModifier(newMod);
+        return true;
+    }
+
+    public static void applyModifier(EntityLivingBase entity, IAttribute attribute, UUID id, String name, double amount, int op) {
+        IAttributeInstance attr = entity.getEntityAttribute(attribute);
+        //noinspection ConstantConditions
+        if (attr != null)
+            applyModifier(attr, id, name, amount, op);
+    }
+
+    public static void removeModifier(EntityLivingBase entity, IAttribute attribute, UUID id) {
+        IAttributeInstance attr = entity.getEntityAttribute(attribute);
+        //noinspection ConstantConditions
+        if (attr != null && attr.getModifier(id) != null)
+            attr.removeModifier(id);
+    }
+
+    private static boolean setModifier(IAttributeInstance attr, UUID id, String name, double amount, int op) {
+        if (attr == null)
+            return false;
+
+        // Calculate the difference for the modifier.
+        double normalValue = attr.getBaseValue();
+        double difference = amount - normalValue;
+        return applyModifier(attr, id, name, difference, op);
     }
 
     public static void setMaxHealth(EntityLivingBase entity, double amount, int op) {
@@ -70,8 +132,7 @@ public class ModifierHandler {
         float originalHealth = entity.getHealth();
         IAttributeInstance attr = entity.getEntityAttribute(SharedMonsterAttributes.MAX_HEALTH);
         //noinspection ConstantConditions
-        if (attr != null) {
-            setModifier(attr, MODIFIER_ID_HEALTH, MODIFIER_NAME_HEALTH, amount, op);
+        if (attr != null && setModifier(attr, MODIFIER_ID_HEALTH, MODIFIER_NAME_HEALTH, amount, op)) {
             entity.setHealth(originalHealth);
         }
     }
@@ -104,4 +165,21 @@ public class ModifierHandler {
         AttributeModifier mod = attr.getModifier(MODIFIER_ID_DAMAGE);
         return mod != null ? mod.getAmount() : 0;
     }
+
+    /**
+     * Sets both of a mob's modifiers at once.
+     *
+     * @param maxHealth   The target max health, as for {@link #setMaxHealth}
+     * @param healthOp    The health modifier operation
+     * @param addedDamage Attack damage to add, as for {@link #addAttackDamage}
+     */
+    public static void setMobModifiers(EntityLivingBase entity, double maxHealth, int healthOp, double addedDamage) {
+        setMaxHealth(entity, maxHealth, healthOp);
+        addAttackDamage(entity, addedDamage, 0);
+    }
+
+    public static void removeMobModifiers(EntityLivingBase entity) {
+        removeModifier(entity, SharedMonsterAttributes.ATTACK_DAMAGE, MODIFIER_ID_DAMAGE);
+        removeModifier(entity, SharedMonsterAttributes.MAX_HEALTH, MODIFIER_ID_HEALTH);
+    }
 }
@@ -19,21 +19,29 @@
 package net.silentchaos512.scalinghealth.utils;
 
 import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.entity.Entity;
 import net.minecraft.entity.SharedMonsterAttributes;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityInject;
+import net.minecraftforge.common.capabilities.CapabilityManager;
+import net.minecraftforge.common.capabilities.ICapabilityProvider;
 import net.minecraftforge.common.util.FakePlayer;
+import net.minecraftforge.event.AttachCapabilitiesEvent;
 import net.minecraftforge.event.entity.living.LivingEvent.LivingUpdateEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.fml.common.Loader;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerChangedDimensionEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
-import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
-import net.minecraftforge.fml.common.gameevent.TickEvent.ServerTickEvent;
-import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
-import net.silentchaos512.lib.util.AttributeHelper;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
 import net.silentchaos512.lib.util.EntityHelper;
 import net.silentchaos512.scalinghealth.ScalingHealth;
 import net.silentchaos512.scalinghealth.compat.gamestages.SHGameStagesCompat;
@@ -43,66 +51,43 @@ import net.silentchaos512.scalinghealth.network.NetworkHandler;
 import net.silentchaos512.scalinghealth.network.message.MessageDataSync;
 import net.silentchaos512.scalinghealth.network.message.MessageWorldDataSync;
 import net.silentchaos512.scalinghealth.scoreboard.SHScoreCriteria;
+import net.silentchaos512.scalinghealth.world.AreaDifficultyCache;
 import net.silentchaos512.scalinghealth.world.ScalingHealthSavedData;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
-import java.lang.ref.WeakReference;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Calendar;
+import java.util.UUID;
 
 @MethodsReturnNonnullByDefault
 @ParametersAreNonnullByDefault
 public final class SHPlayerDataHandler {
     private static final String NBT_ROOT = ScalingHealth.MOD_ID_LOWER + "_data";
 
-    private static final Map<Integer, PlayerData> playerData = new ConcurrentHashMap<>();
+    @CapabilityInject(PlayerData.class)
+    public static Capability<PlayerData> CAPABILITY = null;
+    private static final ResourceLocation CAPABILITY_NAME = new ResourceLocation(ScalingHealth.MOD_ID_LOWER, "player_data");
 
     private SHPlayerDataHandler() {}
 
+    public static void registerCapability() {
+        CapabilityManager.INSTANCE.register(PlayerData.class, new Storage(), PlayerData::new);
+    }
+
     @Nullable
     public static PlayerData get(EntityPlayer player) {
         if (player instanceof FakePlayer && !Config.FakePlayer.haveDifficulty) {
             return null;
         }
 
-        int key = getKey(player);
-        if (!playerData.containsKey(key)) {
-            playerData.put(key, new PlayerData(player));
+        PlayerData data = CAPABILITY != null ? player.getCapability(CAPABILITY, null) : null;
+        if (data != null && !data.loaded) {
+            // Deferred until now because capabilities are attached before the player is read from disk
+            data.load();
         }
-
-        PlayerData data = playerData.get(key);
-        if (data != null && data.playerWR.get() != player) {
-            NBTTagCompound tags = new NBTTagCompound();
-            data.writeToNBT(tags);
-            playerData.remove(key);
-            data = get(player);
-            assert data != null;
-            data.readFromNBT(tags);
-        }
-
         return data;
     }
 
-    private static void cleanup() {
-        List<Integer> remove = new ArrayList<>();
-
-        for (int i : playerData.keySet()) {
-            PlayerData d = playerData.get(i);
-            if (d != null && d.playerWR.get() == null) {
-                remove.add(i);
-            }
-        }
-
-        for (int i : remove) {
-            playerData.remove(i);
-        }
-    }
-
-    private static int getKey(EntityPlayer player) {
-        return player.hashCode() << 1 + (player.world.isRemote ? 1 : 0);
-    }
-
     private static NBTTagCompound getDataCompoundForPlayer(EntityPlayer player) {
         NBTTagCompound forgeData = player.getEntityData();
         if (!forgeData.hasKey(EntityPlayer.PERSISTED_NBT_TAG)) {
@@ -119,9 +104,21 @@ public final class SHPlayerDataHandler {
 
     public static class EventHandler {
         @SubscribeEvent
-        public void onServerTick(ServerTickEvent event) {
-            if (event.phase == Phase.END) {
-                SHPlayerDataHandler.cleanup();
+        public void onAttachCapabilities(AttachCapabilitiesEvent<Entity> event) {
+            if (event.getObject() instanceof EntityPlayer) {
+                event.addCapability(CAPABILITY_NAME, new Provider((EntityPlayer) event.getObject()));
+            }
+        }
+
+        @SubscribeEvent
+        public void onPlayerClone(PlayerEvent.Clone event) {
+            // Respawning or leaving the End creates a new player entity
+            PlayerData oldData = get(event.getOriginal());
+            PlayerData newData = get(event.getEntityPlayer());
+            if (oldData != null && newData != null) {
+                NBTTagCompound tags = new NBTTagCompound();
+                oldData.writeToNBT(tags);
+                newData.readFromNBT(tags);
             }
         }
 
@@ -133,26 +130,38 @@ public final class SHPlayerDataHandler {
                 if (data != null) {
                     data.tick();
                 }
+            }
+        }
 
-                // Get data from nearby players.
-                if (!player.world.isRemote && player.world.getTotalWorldTime() % 5 * Config.PACKET_DELAY == 0) {
-                    for (EntityPlayer p : getNearbyPlayers(player)) {
-                        PlayerData data1 = get(p);
-                        if (data1 != null) {
-                            IMessage message = new MessageDataSync(data1, p);
-                            NetworkHandler.INSTANCE.sendTo(message, (EntityPlayerMP) player);
-                        }
-                    }
+        @SubscribeEvent
+        public void onPlayerChangedDimension(PlayerChangedDimensionEvent event) {
+            // The client creates a new player entity, which has none of the data synced so far
+            PlayerData data = get(event.player);
+            if (data != null) {
+                data.sentToSelf = false;
+            }
+        }
+
+        @SubscribeEvent
+        public void onStartTracking(PlayerEvent.StartTracking event) {
+            // Send a player's data to others when they come into view. Changes after that are sent
+            // by PlayerData#syncToTrackers.
+            if (event.getTarget() instanceof EntityPlayer && event.getEntityPlayer() instanceof EntityPlayerMP) {
+                EntityPlayer target = (EntityPlayer) event.getTarget();
+                PlayerData data = get(target);
+                if (data != null) {
+                    NetworkHandler.queue(new MessageDataSync(data, target), (EntityPlayerMP) event.getEntityPlayer());
                 }
             }
         }
 
-        private static Collection<EntityPlayer> getNearbyPlayers(EntityPlayer center) {
-            int radius = Config.Difficulty.searchRadius;
-            int radiusSquared = radius <= 0 ? Integer.MAX_VALUE : radius * radius;
-            BlockPos centerPos = center.getPosition();
-            return center.world.getPlayers(EntityPlayer.class, p ->
-                    p != null && !p.equals(center) && p.getDistanceSq(centerPos) < radiusSquared);
+        @SubscribeEvent
+        public void onPlayerLogout(PlayerLoggedOutEvent event) {
+            // Fired before the player is written to disk
+            PlayerData data = get(event.player);
+            if (data != null) {
+                data.save();
+            }
         }
 
         @SubscribeEvent
@@ -162,15 +171,13 @@ public final class SHPlayerDataHandler {
 
                 PlayerData data = get(event.player);
                 if (data != null) {
-                    IMessage message = new MessageDataSync(data, event.player);
-                    NetworkHandler.INSTANCE.sendTo(message, playerMP);
+                    NetworkHandler.queue(new MessageDataSync(data, event.player), playerMP);
                 } else {
                     ScalingHealth.LOGGER.error("Player data for '{}' not found!", event.player.getName());
                 }
 
                 if (Config.Difficulty.AREA_DIFFICULTY_MODE == EnumAreaDifficultyMode.SERVER_WIDE) {
-                    IMessage message2 = new MessageWorldDataSync(ScalingHealthSavedData.get(event.player.world));
-                    NetworkHandler.INSTANCE.sendTo(message2, playerMP);
+                    NetworkHandler.queue(new MessageWorldDataSync(ScalingHealthSavedData.get(event.player.world)), playerMP);
                 }
             }
         }
@@ -184,23 +191,72 @@ public final class SHPlayerDataHandler {
 
         private static final UUID UUID_XP_HEALTH_BONUS = UUID.fromString("3d3cb1b5-03b0-496a-aaac-60bf63ba139b");
 
+        // Other players only use difficulty for rough area estimates, so small changes are not sent
+        private static final double TRACKER_DIFFICULTY_THRESHOLD = 0.1;
+        // Trackers further away than this get updates less often
+        private static final double NEAR_TRACKER_DISTANCE_SQ = 64 * 64;
+        private static final int FAR_TRACKER_DELAY_MULTIPLIER = 5;
+        // Full resync to the player's own client every this many packet delays, in case anything was missed
+        private static final int HEARTBEAT_DELAY_MULTIPLIER = 30;
+
+        // Fields changed since the last save
+        private static final int DIRTY_DIFFICULTY = 1;
+        private static final int DIRTY_HEALTH = 2;
+        private static final int DIRTY_MAX_HEALTH = 4;
+        private static final int DIRTY_LAST_LOGIN = 8;
+        private static final int DIRTY_ALL = DIRTY_DIFFICULTY | DIRTY_HEALTH | DIRTY_MAX_HEALTH | DIRTY_LAST_LOGIN;
+
         double difficulty = 0.0D;
         float health = 20;
         float maxHealth = Config.Player.Health.startingHealth;
         @SuppressWarnings("UseOfObsoleteDateTimeApi") // Removed in 1.13
         Calendar lastTimePlayed = Calendar.getInstance();
 
-        WeakReference<EntityPlayer> playerWR;
+        // Null for detached instances (see the no-arg constructor)
+        @Nullable
+        private final EntityPlayer player;
         private final boolean client;
+        private boolean loaded = false;
         private int lastPosX = 0;
         @SuppressWarnings({"FieldCanBeLocal", "unused"}) // Leaving alone for compatibility
         private int lastPosY = 0;
         private int lastPosZ = 0;
+        private double lastCachedDifficulty = 0.0D;
+
+        private int dirty;
+        // Set when a field clients can see changes, cleared once syncs have been sent
+        private boolean needsSync;
+        private int lastXpLevel;
+
+        // Values last sent to players tracking this one
+        private double trackedDifficulty;
+        private float trackedHealth;
+        private float trackedMaxHealth;
+        private int trackedXpLevel;
+        private boolean nearTrackersDirty;
+        private boolean farTrackersDirty;
+
+        // Values last sent to this player's client, quantized as in MessageDataSync
+        private boolean sentToSelf;
+        private int sentDifficulty;
+        private int sentHealth;
+        private int sentMaxHealth;
+        private int sentXpLevel;
 
         public PlayerData(EntityPlayer player) {
-            playerWR = new WeakReference<>(player);
+            this.player = player;
             client = player.world.isRemote;
-            load();
+        }
+
+        /**
+         * Creates player data that is not attached to a player, such as the capability's default
+         * instance. It only holds values: it is never saved or synced, and changing it has no
+         * effect on any player.
+         */
+        public PlayerData() {
+            this.player = null;
+            this.client = true;
+            this.loaded = true;
         }
 
         public double getDifficulty() {
@@ -208,8 +264,7 @@ public final class SHPlayerDataHandler {
         }
 
         public void setDifficulty(double value) {
-            EntityPlayer player = playerWR.get();
-
+            double oldDifficulty = difficulty;
             // Player exempt from difficulty?
             if (Config.Difficulty.DIFFICULTY_EXEMPT_PLAYERS.contains(player)) {
                 difficulty = 0;
@@ -218,10 +273,21 @@ public final class SHPlayerDataHandler {
             else {
                 difficulty = MathHelper.clamp(value, Config.Difficulty.minValue, Config.Difficulty.maxValue);
             }
+            if (difficulty == oldDifficulty) {
+                return;
+            }
+            markDirty(DIRTY_DIFFICULTY);
+            if (player == null) {
+                return;
+            }
 
             // Update scoreboard
-            if (player != null) {
-                SHScoreCriteria.updateScore(player, (int) difficulty);
+            SHScoreCriteria.updateScore(player, (int) difficulty);
+
+            // Drop cached area difficulty around the player if the change is big enough to matter
+            if (!client && Math.abs(difficulty - lastCachedDifficulty) > Config.Difficulty.areaCacheChangeThreshold) {
+                lastCachedDifficulty = difficulty;
+                AreaDifficultyCache.get(player.world).invalidateAround(player);
             }
         }
 
@@ -230,21 +296,22 @@ public final class SHPlayerDataHandler {
         }
 
         public void incrementDifficulty(double amount, boolean alsoAffectWorldDifficulty) {
-            EntityPlayer player = playerWR.get();
-            if (player != null) {
-                // Difficulty disabled via game rule?
-                if (!player.world.getGameRules().getBoolean(ScalingHealth.GAME_RULE_DIFFICULTY)) {
-                    return;
-                }
-                // Multiplier for this dimension?
-                if (Config.Difficulty.DIMENSION_INCREASE_MULTIPLIER.containsKey(player.dimension)) {
-                    amount *= Config.Difficulty.DIMENSION_INCREASE_MULTIPLIER.get(player.dimension);
-                }
+            if (player == null) {
+                setDifficulty(difficulty + amount);
+                return;
+            }
+            // Difficulty disabled via game rule?
+            if (!player.world.getGameRules().getBoolean(ScalingHealth.GAME_RULE_DIFFICULTY)) {
+                return;
+            }
+            // Multiplier for this dimension?
+            if (Config.Difficulty.DIMENSION_INCREASE_MULTIPLIER.containsKey(player.dimension)) {
+                amount *= Config.Difficulty.DIMENSION_INCREASE_MULTIPLIER.get(player.dimension);
             }
 
             setDifficulty(difficulty + amount);
 
-            if (alsoAffectWorldDifficulty && player != null) {
+            if (alsoAffectWorldDifficulty) {
                 ScalingHealthSavedData data = ScalingHealthSavedData.get(player.world);
                 if (data != null) {
                     data.difficulty += amount;
@@ -269,28 +336,31 @@ public final class SHPlayerDataHandler {
 
             int configMax = Config.Player.Health.maxHealth <= 0 ? Integer.MAX_VALUE : Config.Player.Health.maxHealth;
 
+            float oldMaxHealth = maxHealth;
             maxHealth = MathHelper.clamp(value, 2, configMax);
 
-            EntityPlayer player = playerWR.get();
-            if (player != null)
+            if (player != null) {
                 ModifierHandler.setMaxHealth(player, maxHealth, 0);
+            }
 
-            save();
-            sendUpdateMessage();
+            if (maxHealth != oldMaxHealth) {
+                markDirty(DIRTY_MAX_HEALTH);
+                sendUpdateMessage();
+            }
         }
 
         public void incrementMaxHealth(float amount) {
             setMaxHealth(maxHealth + amount);
+            if (player == null) {
+                return;
+            }
 
-            EntityPlayer player = playerWR.get();
-            if (player != null) {
-                int current = (int) player.getHealth();
-                EntityHelper.heal(player, amount, Config.Items.Heart.healingEvent);
-                int newHealth = (int) player.getHealth();
+            int current = (int) player.getHealth();
+            EntityHelper.heal(player, amount, Config.Items.Heart.healingEvent);
+            int newHealth = (int) player.getHealth();
 
-                if (current + (int) amount != newHealth) {
-                    ScalingHealth.logHelper.warn("Another mod seems to have canceled healing from a max health increase (player {})", player.getName());
-                }
+            if (current + (int) amount != newHealth) {
+                ScalingHealth.logHelper.warn("Another mod seems to have canceled healing from a max health increase (player {})", player.getName());
             }
         }
 
@@ -300,12 +370,20 @@ public final class SHPlayerDataHandler {
             return lastTimePlayed;
         }
 
+        @SuppressWarnings("UseOfObsoleteDateTimeApi")
+        public void setLastTimePlayed(Calendar time) {
+            lastTimePlayed.setTime(time.getTime());
+            markDirty(DIRTY_LAST_LOGIN);
+        }
+
+        private void markDirty(int fields) {
+            dirty |= fields;
+            if ((fields & ~DIRTY_LAST_LOGIN) != 0)
+                needsSync = true;
+        }
+
         private void tick() {
             if (!client) {
-                EntityPlayer player = playerWR.get();
-                if (player == null)
-                    return;
-
                 // Increase player difficulty.
                 if (player.world.getTotalWorldTime() % 20 == 0) {
                     float amount = Config.Difficulty.perSecond;
@@ -335,75 +413,178 @@ public final class SHPlayerDataHandler {
 
                         if (Config.Player.Health.byXP.containsKey(highestLevel)) {
                             float modAmount = Config.Player.Health.byXP.get(highestLevel) - Config.Player.Health.startingHealth;
-                            AttributeHelper.apply(player, SharedMonsterAttributes.MAX_HEALTH, UUID_XP_HEALTH_BONUS, "health_from_xp", modAmount, 0);
+                            ModifierHandler.applyModifier(player, SharedMonsterAttributes.MAX_HEALTH, UUID_XP_HEALTH_BONUS, "health_from_xp", modAmount, 0);
                         } else {
-                            AttributeHelper.remove(player, SharedMonsterAttributes.MAX_HEALTH, UUID_XP_HEALTH_BONUS);
+                            ModifierHandler.removeModifier(player, SharedMonsterAttributes.MAX_HEALTH, UUID_XP_HEALTH_BONUS);
                         }
                     }
                 }
-                health = player.getHealth();
-                // Sync with client?
-                if (player.world.getTotalWorldTime() % Config.PACKET_DELAY == 0) {
+                if (player.getHealth() != health) {
+                    health = player.getHealth();
+                    markDirty(DIRTY_HEALTH);
+                }
+                if (player.experienceLevel != lastXpLevel) {
+                    lastXpLevel = player.experienceLevel;
+                    needsSync = true;
+                }
+
+                // Offset by entity ID, so players are not all saved and synced on the same tick
+                long time = player.world.getTotalWorldTime() + player.getEntityId();
+                if (time % Config.PACKET_DELAY == 0) {
                     save();
-                    sendUpdateMessage();
+
+                    boolean heartbeat = time % ((long) Config.PACKET_DELAY * HEARTBEAT_DELAY_MULTIPLIER) == 0;
+                    if (heartbeat) {
+                        sentToSelf = false;
+                    }
+                    if (needsSync || heartbeat || Config.Difficulty.AREA_DIFFICULTY_MODE == EnumAreaDifficultyMode.SERVER_WIDE) {
+                        sendUpdateMessage();
+                    }
+                    if (needsSync || farTrackersDirty) {
+                        syncToTrackers(time);
+                    }
+                    needsSync = false;
                 }
             }
         }
 
-        private void sendUpdateMessage() {
-            if (!client) {
-                EntityPlayer player = playerWR.get();
-
-                if (player != null) {
-                    EntityPlayerMP playerMP = (EntityPlayerMP) player;
-                    PlayerData data = get(player);
+        /**
+         * Sends this player's data to the players tracking them, if it has changed since the last
+         * time. Trackers within {@link #NEAR_TRACKER_DISTANCE_SQ} are sent changes every packet
+         * delay, others only every {@link #FAR_TRACKER_DELAY_MULTIPLIER} packet delays. Players who
+         * start tracking get the current data right away (see {@link EventHandler#onStartTracking}).
+         */
+        private void syncToTrackers(long time) {
+            if (Math.abs(difficulty - trackedDifficulty) >= TRACKER_DIFFICULTY_THRESHOLD || health != trackedHealth
+                    || maxHealth != trackedMaxHealth || player.experienceLevel != trackedXpLevel) {
+                trackedDifficulty = difficulty;
+                trackedHealth = health;
+                trackedMaxHealth = maxHealth;
+                trackedXpLevel = player.experienceLevel;
+                nearTrackersDirty = true;
+                farTrackersDirty = true;
+            }
 
-                    if (data != null) {
-                        IMessage message = new MessageDataSync(data, player);
-                        NetworkHandler.INSTANCE.sendTo(message, playerMP);
+            boolean sendFar = farTrackersDirty && time % ((long) Config.PACKET_DELAY * FAR_TRACKER_DELAY_MULTIPLIER) == 0;
+            if (!nearTrackersDirty && !sendFar)
+                return;
 
-                        if (Config.Difficulty.AREA_DIFFICULTY_MODE == EnumAreaDifficultyMode.SERVER_WIDE) {
-                            IMessage message2 = new MessageWorldDataSync(ScalingHealthSavedData.get(player.world));
-                            NetworkHandler.INSTANCE.sendTo(message2, playerMP);
-                        }
-                    }
+            MessageDataSync message = null;
+            for (EntityPlayer tracker : ((WorldServer) player.world).getEntityTracker().getTrackingPlayers(player)) {
+                boolean near = tracker.getDistanceSq(player) <= NEAR_TRACKER_DISTANCE_SQ;
+                if (near ? nearTrackersDirty : sendFar) {
+                    if (message == null)
+                        message = new MessageDataSync(this, player);
+                    NetworkHandler.queue(message, (EntityPlayerMP) tracker);
                 }
             }
+
+            nearTrackersDirty = false;
+            if (sendFar)
+                farTrackersDirty = false;
         }
 
-        public void save() {
+        /**
+         * Sends the fields that have changed since the last update to the player's client.
+         */
+        private void sendUpdateMessage() {
             if (!client) {
-                EntityPlayer player = playerWR.get();
-                if (player != null) {
-                    NBTTagCompound tags = getDataCompoundForPlayer(player);
-                    writeToNBT(tags);
+                EntityPlayerMP playerMP = (EntityPlayerMP) player;
+                int fields = getFieldsChangedSinceLastSent();
+                if (fields != 0) {
+                    NetworkHandler.queue(new MessageDataSync(this, player, fields), playerMP);
+                }
+
+                if (Config.Difficulty.AREA_DIFFICULTY_MODE == EnumAreaDifficultyMode.SERVER_WIDE) {
+                    NetworkHandler.queue(new MessageWorldDataSync(ScalingHealthSavedData.get(player.world)), playerMP);
                 }
             }
         }
 
+        private int getFieldsChangedSinceLastSent() {
+            int newDifficulty = MessageDataSync.quantizeDifficulty(difficulty);
+            int newHealth = MessageDataSync.quantizeHealth(health);
+            int newMaxHealth = MessageDataSync.quantizeHealth(maxHealth);
+
+            int fields = 0;
+            if (!sentToSelf || newDifficulty != sentDifficulty) fields |= MessageDataSync.DIFFICULTY;
+            if (!sentToSelf || newHealth != sentHealth) fields |= MessageDataSync.HEALTH;
+            if (!sentToSelf || newMaxHealth != sentMaxHealth) fields |= MessageDataSync.MAX_HEALTH;
+            if (!sentToSelf || player.experienceLevel != sentXpLevel) fields |= MessageDataSync.XP_LEVEL;
+
+            sentToSelf = true;
+            sentDifficulty = newDifficulty;
+            sentHealth = newHealth;
+            sentMaxHealth = newMaxHealth;
+            sentXpLevel = player.experienceLevel;
+            return fields;
+        }
+
+        /**
+         * Sets the values received in a {@link MessageDataSync}. Only used on the client.
+         *
+         * @param fields The fields included in the message
+         */
+        public void readSync(int fields, double difficulty, float health, float maxHealth) {
+            if ((fields & MessageDataSync.DIFFICULTY) != 0)
+                this.difficulty = difficulty;
+            if ((fields & MessageDataSync.HEALTH) != 0)
+                this.health = health;
+            if ((fields & MessageDataSync.MAX_HEALTH) != 0)
+                this.maxHealth = maxHealth;
+        }
+
+        /**
+         * Writes any fields that have changed since the last save to the player's persisted NBT.
+         * Called every packet delay and when the player logs out.
+         */
+        public void save() {
+            if (!client && dirty != 0) {
+                NBTTagCompound tags = getDataCompoundForPlayer(player);
+                if ((dirty & DIRTY_DIFFICULTY) != 0)
+                    tags.setDouble(NBT_DIFFICULTY, difficulty);
+                if ((dirty & DIRTY_HEALTH) != 0)
+                    tags.setFloat(NBT_HEALTH, health);
+                if ((dirty & DIRTY_MAX_HEALTH) != 0)
+                    tags.setFloat(NBT_MAX_HEALTH, maxHealth);
+                if ((dirty & DIRTY_LAST_LOGIN) != 0)
+                    tags.setString(NBT_LAST_LOGIN, getLastLoginString());
+                dirty = 0;
+            }
+        }
+
         public void writeToNBT(NBTTagCompound tags) {
             tags.setDouble(NBT_DIFFICULTY, difficulty);
             tags.setFloat(NBT_HEALTH, health);
             tags.setFloat(NBT_MAX_HEALTH, maxHealth);
+            tags.setString(NBT_LAST_LOGIN, getLastLoginString());
+        }
 
+        private String getLastLoginString() {
             int year = lastTimePlayed.get(Calendar.YEAR);
             int month = lastTimePlayed.get(Calendar.MONTH) + 1;
             int date = lastTimePlayed.get(Calendar.DATE);
-            String dateString = year + "/" + month + "/" + date;
-            tags.setString(NBT_LAST_LOGIN, dateString);
+            return year + "/" + month + "/" + date;
         }
 
         public void load() {
+            loaded = true;
             if (!client) {
-                EntityPlayer player = playerWR.get();
-                if (player != null) {
-                    NBTTagCompound tags = getDataCompoundForPlayer(player);
-                    readFromNBT(tags);
+                NBTTagCompound tags = getDataCompoundForPlayer(player);
+                readFromNBT(tags);
+                // Matches what is saved, unless nothing has been saved yet
+                if (tags.hasKey(NBT_DIFFICULTY)) {
+                    dirty = 0;
                 }
             }
         }
 
+        /**
+         * Replaces all fields, so everything is marked to be saved and synced.
+         */
         public void readFromNBT(NBTTagCompound tags) {
+            markDirty(DIRTY_ALL);
+
             difficulty = tags.getDouble(NBT_DIFFICULTY);
             health = tags.getFloat(NBT_HEALTH);
             maxHealth = tags.getFloat(NBT_MAX_HEALTH);
@@ -424,4 +605,40 @@ public final class SHPlayerDataHandler {
             }
         }
     }
+
+    private static class Provider implements ICapabilityProvider {
+        private final PlayerData instance;
+
+        Provider(EntityPlayer player) {
+            this.instance = new PlayerData(player);
+        }
+
+        @Override
+        public boolean hasCapability(Capability<?> capability, @Nullable EnumFacing facing) {
+            return capability == CAPABILITY;
+        }
+
+        @Nullable
+        @Override
+        public <T> T getCapability(Capability<T> capability, @Nullable EnumFacing facing) {
+            return capability == CAPABILITY ? CAPABILITY.cast(instance) : null;
+        }
+    }
+
+    // Player data is saved in the player's persisted NBT (see PlayerData#save), not with capabilities
+    private static class Storage implements Capability.IStorage<PlayerData> {
+        @Nullable
+        @Override
+        public NBTBase writeNBT(Capability<PlayerData> capability, PlayerData instance, @Nullable EnumFacing side) {
+            NBTTagCompound tags = new NBTTagCompound();
+            instance.writeToNBT(tags);
+            return tags;
+        }
+
+        @Override
+        public void readNBT(Capability<PlayerData> capability, PlayerData instance, @Nullable EnumFacing side, NBTBase nbt) {
+            if (nbt instanceof NBTTagCompound)
+                instance.readFromNBT((NBTTagCompound) nbt);
+        }
+    }
 }
@@ -0,0 +1,283 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.utils;
+
+import net.minecraft.entity.EntityList;
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.util.ResourceLocation;
+import net.silentchaos512.scalinghealth.ScalingHealth;
+import net.silentchaos512.scalinghealth.config.Config;
+import net.silentchaos512.scalinghealth.lib.MobStats;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Records mob spawns and scaled damage into a fixed-size ring buffer of binary records, which a
+ * background thread writes to {@code logs/scalinghealth-trace.bin} every few seconds. Recording
+ * does not allocate (apart from the first time an entity or damage type is seen), so this can
+ * stay enabled on busy servers, unlike the debug log options. Records are lost if the buffer
+ * fills up between flushes, and a marker with the count is written instead.
+ * <p>
+ * There are two buffers: records go into the active one while the background thread writes out
+ * the other. The background thread only swaps them and copies new names while holding the lock,
+ * so recording never waits for file writes or large copies.
+ * <p>
+ * The file is rotated to {@code scalinghealth-trace.1.bin} when it gets large. Use
+ * {@link TraceDecoder} to read it.
+ */
+public final class TraceBuffer {
+    public static final TraceBuffer INSTANCE = new TraceBuffer();
+
+    // File format: MAGIC, VERSION, then records, each starting with a type byte
+    static final int MAGIC = 0x53485452; // "SHTR"
+    static final int VERSION = 1;
+    // [int id][UTF name]
+    static final byte TYPE_NAME = 0;
+    // [RECORD_SIZE - 1 bytes]
+    static final byte TYPE_SPAWN = 1;
+    static final byte TYPE_DAMAGE = 2;
+    // [long count]
+    static final byte TYPE_DROPPED = 3;
+
+    // Record layout: type (byte), flags (byte), extra name ID (short), dimension (int),
+    // world time (long), entity name ID (int), x/y/z (int), four float values
+    static final int RECORD_SIZE = 48;
+    static final int FLAG_BLIGHT = 1;
+
+    public static final File FILE = new File("logs", "scalinghealth-trace.bin");
+    private static final File ROTATED_FILE = new File("logs", "scalinghealth-trace.1.bin");
+    private static final long MAX_FILE_SIZE = 8L << 20;
+    private static final int CAPACITY = 1 << 14;
+    private static final int FLUSH_INTERVAL_SECONDS = 5;
+
+    // Active buffer, and records written to it since the last swap
+    private ByteBuffer ring = ByteBuffer.allocate(CAPACITY * RECORD_SIZE);
+    private long written;
+    // Written out by the flush thread, swapped with the active buffer under the lock
+    private ByteBuffer standby = ByteBuffer.allocate(CAPACITY * RECORD_SIZE);
+
+    private final Map<Object, Integer> nameIds = new ConcurrentHashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    // Only used by the flush thread
+    private DataOutputStream out;
+    private int namesWritten;
+
+    private ScheduledExecutorService executor;
+
+    private TraceBuffer() {}
+
+    public static boolean isEnabled() {
+        return Config.Debug.trace;
+    }
+
+    public void recordSpawn(EntityLivingBase entity, MobStats stats) {
+        if (!isEnabled()) return;
+
+        int typeId = getEntityNameId(entity);
+        synchronized (this) {
+            int pos = begin(TYPE_SPAWN, stats.blight ? FLAG_BLIGHT : 0, 0, entity, typeId);
+            ring.putFloat(pos + 32, stats.difficulty);
+            ring.putFloat(pos + 36, stats.addedHealth);
+            ring.putFloat(pos + 40, stats.addedDamage);
+            ring.putFloat(pos + 44, entity.getMaxHealth());
+        }
+    }
+
+    public void recordDamage(EntityLivingBase entity, String damageType, float original, float scaled, float scale, float affected) {
+        if (!isEnabled()) return;
+
+        int typeId = getEntityNameId(entity);
+        int damageId = getNameId(damageType, damageType);
+        synchronized (this) {
+            int pos = begin(TYPE_DAMAGE, 0, damageId, entity, typeId);
+            ring.putFloat(pos + 32, original);
+            ring.putFloat(pos + 36, scaled);
+            ring.putFloat(pos + 40, scale);
+            ring.putFloat(pos + 44, affected);
+        }
+    }
+
+    private int begin(byte type, int flags, int extra, EntityLivingBase entity, int typeId) {
+        ensureStarted();
+        int pos = (int) (written++ % CAPACITY) * RECORD_SIZE;
+        ring.put(pos, type);
+        ring.put(pos + 1, (byte) flags);
+        ring.putShort(pos + 2, (short) extra);
+        ring.putInt(pos + 4, entity.dimension);
+        ring.putLong(pos + 8, entity.world.getTotalWorldTime());
+        ring.putInt(pos + 16, typeId);
+        ring.putInt(pos + 20, (int) Math.floor(entity.posX));
+        ring.putInt(pos + 24, (int) Math.floor(entity.posY));
+        ring.putInt(pos + 28, (int) Math.floor(entity.posZ));
+        return pos;
+    }
+
+    private int getEntityNameId(EntityLivingBase entity) {
+        ResourceLocation key = EntityList.getKey(entity);
+        return key != null ? getNameId(key, null) : getNameId(entity.getClass(), null);
+    }
+
+    private int getNameId(Object key, String name) {
+        Integer id = nameIds.get(key);
+        if (id == null) {
+            synchronized (this) {
+                id = nameIds.get(key);
+                if (id == null) {
+                    id = names.size();
+                    names.add(name != null ? name : key instanceof Class ? ((Class<?>) key).getName() : key.toString());
+                    nameIds.put(key, id);
+                }
+            }
+        }
+        return id;
+    }
+
+    private synchronized void ensureStarted() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "Scaling Health Trace");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::drain, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Writes everything recorded so far to the trace file and waits for it to finish.
+     */
+    public void flush() {
+        ScheduledExecutorService ex;
+        synchronized (this) {
+            ex = executor;
+        }
+        if (ex == null) return;
+        try {
+            ex.submit(this::drain).get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            ScalingHealth.logHelper.warn(e, "Failed to flush trace buffer");
+        }
+    }
+
+    private void drain() {
+        try {
+            openFile();
+        } catch (IOException e) {
+            ScalingHealth.logHelper.warn(e, "Failed to open trace file");
+            closeFile();
+            return;
+        }
+
+        ByteBuffer buffer;
+        long total;
+        int firstNameId;
+        List<String> newNames;
+        synchronized (this) {
+            buffer = ring;
+            total = written;
+            ring = standby;
+            standby = buffer;
+            written = 0;
+
+            firstNameId = namesWritten;
+            newNames = new ArrayList<>(names.subList(namesWritten, names.size()));
+            namesWritten = names.size();
+        }
+
+        long dropped = Math.max(0, total - CAPACITY);
+        int count = (int) Math.min(total, CAPACITY);
+        if (count == 0 && newNames.isEmpty()) return;
+
+        try {
+            for (int i = 0; i < newNames.size(); ++i) {
+                out.writeByte(TYPE_NAME);
+                out.writeInt(firstNameId + i);
+                out.writeUTF(newNames.get(i));
+            }
+            if (dropped > 0) {
+                out.writeByte(TYPE_DROPPED);
+                out.writeLong(dropped);
+            }
+            // Oldest record first; after wrapping around it is the one after the newest
+            byte[] array = buffer.array();
+            int start = dropped > 0 ? (int) (total % CAPACITY) * RECORD_SIZE : 0;
+            int end = count * RECORD_SIZE;
+            out.write(array, start, end - start);
+            out.write(array, 0, start);
+            out.flush();
+
+            if (FILE.length() > MAX_FILE_SIZE) {
+                rotate();
+            }
+        } catch (IOException e) {
+            ScalingHealth.logHelper.warn(e, "Failed to write trace file");
+            closeFile();
+        }
+    }
+
+    private void openFile() throws IOException {
+        if (out != null) return;
+
+        //noinspection ResultOfMethodCallIgnored
+        FILE.getParentFile().mkdirs();
+        boolean isNew = !FILE.exists() || FILE.length() == 0;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FILE, true)));
+        if (isNew) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+        // The file does not have this run's names yet (or has another run's), so write them all again
+        List<String> allNames;
+        synchronized (this) {
+            allNames = new ArrayList<>(names);
+            namesWritten = allNames.size();
+        }
+        for (int i = 0; i < allNames.size(); ++i) {
+            out.writeByte(TYPE_NAME);
+            out.writeInt(i);
+            out.writeUTF(allNames.get(i));
+        }
+    }
+
+    private void rotate() {
+        closeFile();
+        //noinspection ResultOfMethodCallIgnored
+        ROTATED_FILE.delete();
+        if (!FILE.renameTo(ROTATED_FILE)) {
+            ScalingHealth.logHelper.warn("Failed to rotate trace file");
+        }
+    }
+
+    private void closeFile() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                ScalingHealth.logHelper.warn(e, "Failed to close trace file");
+            }
+            out = null;
+        }
+    }
+}
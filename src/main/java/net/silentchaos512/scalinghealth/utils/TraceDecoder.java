@@ -0,0 +1,108 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns a {@link TraceBuffer} file into readable text, one line per record. Can also be run on its
+ * own, with the trace file as the only argument.
+ */
+public final class TraceDecoder {
+    private TraceDecoder() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: TraceDecoder <trace file>");
+            return;
+        }
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(System.out));
+        decode(new File(args[0]), writer);
+        writer.flush();
+    }
+
+    /**
+     * @return The number of spawn and damage records decoded
+     */
+    public static int decode(File file, PrintWriter writer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != TraceBuffer.MAGIC)
+                throw new IOException("Not a Scaling Health trace file: " + file);
+            int version = in.readInt();
+            if (version != TraceBuffer.VERSION)
+                throw new IOException("Unsupported trace file version " + version);
+
+            Map<Integer, String> names = new HashMap<>();
+            ByteBuffer record = ByteBuffer.allocate(TraceBuffer.RECORD_SIZE);
+            int count = 0;
+
+            int type;
+            while ((type = in.read()) >= 0) {
+                switch (type) {
+                    case TraceBuffer.TYPE_NAME:
+                        int id = in.readInt();
+                        names.put(id, in.readUTF());
+                        break;
+                    case TraceBuffer.TYPE_DROPPED:
+                        writer.println("... " + in.readLong() + " records lost (buffer full)");
+                        break;
+                    case TraceBuffer.TYPE_SPAWN:
+                    case TraceBuffer.TYPE_DAMAGE:
+                        record.clear();
+                        record.put((byte) type);
+                        in.readFully(record.array(), 1, TraceBuffer.RECORD_SIZE - 1);
+                        writer.println(format(record, names));
+                        ++count;
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type);
+                }
+            }
+            return count;
+        }
+    }
+
+    private static String format(ByteBuffer record, Map<Integer, String> names) {
+        int type = record.get(0);
+        int flags = record.get(1);
+        String extra = names.getOrDefault((int) record.getShort(2), "?");
+        int dimension = record.getInt(4);
+        long time = record.getLong(8);
+        String entity = names.getOrDefault(record.getInt(16), "?");
+        int x = record.getInt(20);
+        int y = record.getInt(24);
+        int z = record.getInt(28);
+        float a = record.getFloat(32);
+        float b = record.getFloat(36);
+        float c = record.getFloat(40);
+        float d = record.getFloat(44);
+
+        if (type == TraceBuffer.TYPE_SPAWN) {
+            boolean blight = (flags & TraceBuffer.FLAG_BLIGHT) != 0;
+            return String.format(Locale.ROOT, "[%d] dim %d spawn %s%s (%d, %d, %d): difficulty=%.2f, health +%.2f, damage +%.2f, max health=%.1f",
+                    time, dimension, blight ? "blight " : "", entity, x, y, z, a, b, c, d);
+        }
+        return String.format(Locale.ROOT, "[%d] dim %d damage %s on %s (%d, %d, %d): %.2f -> %.2f (scale=%.3f, affected=%.3f)",
+                time, dimension, extra, entity, x, y, z, a, b, c, d);
+    }
+}
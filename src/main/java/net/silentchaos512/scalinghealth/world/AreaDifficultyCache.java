@@ -0,0 +1,205 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.world;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+import net.silentchaos512.scalinghealth.api.AreaDifficultyStrategy;
+import net.silentchaos512.scalinghealth.config.Config;
+import net.silentchaos512.scalinghealth.lib.AreaDifficultyEvaluator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches area difficulty per chunk, so mobs spawning in the same chunk a few ticks apart do not
+ * all repeat the same calculation. Entries expire after a configurable number of ticks and the
+ * least recently used chunks are dropped once the cache is full. Entries are also invalidated
+ * early when a player in range has a large difficulty change, or when a player moves into or out
+ * of range of a cached chunk.
+ * <p>
+ * Each chunk holds a value for one strategy, with the default options (group bonus and clamping).
+ * Only the server caches values.
+ */
+public final class AreaDifficultyCache {
+    private static final TIntObjectHashMap<AreaDifficultyCache> CACHES = new TIntObjectHashMap<>();
+
+    private final World world;
+    private final Map<Long, Entry> entries = new LinkedHashMap<Long, Entry>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > Config.Difficulty.areaCacheSize;
+        }
+    };
+
+    private AreaDifficultyCache(World world) {
+        this.world = world;
+    }
+
+    public static boolean isEnabled() {
+        return Config.Difficulty.areaCacheSize > 0;
+    }
+
+    public static AreaDifficultyCache get(World world) {
+        int dimension = world.provider.getDimension();
+        AreaDifficultyCache cache = CACHES.get(dimension);
+        if (cache == null || cache.world != world) {
+            cache = new AreaDifficultyCache(world);
+            CACHES.put(dimension, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Gets the cached area difficulty for the chunk containing {@code pos}, calculating it for
+     * {@code pos} if the chunk has no valid entry.
+     */
+    public double getAreaDifficulty(AreaDifficultyStrategy strategy, BlockPos pos) {
+        int chunkX = pos.getX() >> 4;
+        int chunkZ = pos.getZ() >> 4;
+        long key = ChunkPos.asLong(chunkX, chunkZ);
+        long time = world.getTotalWorldTime();
+
+        Entry entry = entries.get(key);
+        if (entry != null && entry.strategy == strategy && entry.expiresAt > time)
+            return entry.value;
+
+        double value = AreaDifficultyEvaluator.get(world).evaluate(strategy, world, pos, true, true);
+        entries.put(key, new Entry(strategy, chunkX, chunkZ, value, time + Config.Difficulty.areaCacheLifetime));
+        return value;
+    }
+
+    /**
+     * Drops all cached chunks that the player is in range of.
+     */
+    public void invalidateAround(EntityPlayer player) {
+        if (entries.isEmpty())
+            return;
+
+        int radius = Config.Difficulty.searchRadius;
+        if (radius <= 0) {
+            entries.clear();
+            return;
+        }
+
+        int chunkX = MathHelper.floor(player.posX) >> 4;
+        int chunkZ = MathHelper.floor(player.posZ) >> 4;
+        long radiusSquared = (long) radius * radius;
+
+        if (entries.size() < getChunksInRange(radius)) {
+            entries.values().removeIf(entry -> entry.distanceSq(chunkX, chunkZ) <= radiusSquared);
+            return;
+        }
+
+        // Fewer chunks in range than cached, so look them up directly
+        int chunkRadius = radius >> 4;
+        for (int x = chunkX - chunkRadius; x <= chunkX + chunkRadius; ++x) {
+            for (int z = chunkZ - chunkRadius; z <= chunkZ + chunkRadius; ++z) {
+                if (distanceSq(x, z, chunkX, chunkZ) <= radiusSquared)
+                    entries.remove(ChunkPos.asLong(x, z));
+            }
+        }
+    }
+
+    /**
+     * Drops cached chunks that a player moved into or out of range of.
+     */
+    void onPlayerChangedChunk(int oldChunkX, int oldChunkZ, int newChunkX, int newChunkZ) {
+        int radius = Config.Difficulty.searchRadius;
+        if (entries.isEmpty() || radius <= 0)
+            return;
+
+        long radiusSquared = (long) radius * radius;
+
+        if (entries.size() < 2 * getChunksInRange(radius)) {
+            entries.values().removeIf(entry -> (entry.distanceSq(oldChunkX, oldChunkZ) <= radiusSquared)
+                    != (entry.distanceSq(newChunkX, newChunkZ) <= radiusSquared));
+            return;
+        }
+
+        // Only chunks in range of exactly one of the two positions change
+        removeOnlyInRangeOf(oldChunkX, oldChunkZ, newChunkX, newChunkZ, radius);
+        removeOnlyInRangeOf(newChunkX, newChunkZ, oldChunkX, oldChunkZ, radius);
+    }
+
+    /**
+     * Removes chunks in range of the first position, but not the second.
+     */
+    private void removeOnlyInRangeOf(int chunkX, int chunkZ, int otherChunkX, int otherChunkZ, int radius) {
+        long radiusSquared = (long) radius * radius;
+        int chunkRadius = radius >> 4;
+        for (int x = chunkX - chunkRadius; x <= chunkX + chunkRadius; ++x) {
+            for (int z = chunkZ - chunkRadius; z <= chunkZ + chunkRadius; ++z) {
+                if (distanceSq(x, z, chunkX, chunkZ) <= radiusSquared && distanceSq(x, z, otherChunkX, otherChunkZ) > radiusSquared)
+                    entries.remove(ChunkPos.asLong(x, z));
+            }
+        }
+    }
+
+    /**
+     * Size of the square of chunks that can be in range of one position.
+     */
+    private static long getChunksInRange(int radius) {
+        long side = 2L * (radius >> 4) + 1;
+        return side * side;
+    }
+
+    /**
+     * Squared block distance between the centers of two chunks.
+     */
+    private static long distanceSq(int chunkX, int chunkZ, int otherChunkX, int otherChunkZ) {
+        long dx = (long) (chunkX - otherChunkX) << 4;
+        long dz = (long) (chunkZ - otherChunkZ) << 4;
+        return dx * dx + dz * dz;
+    }
+
+    public static void clearAll() {
+        CACHES.clear();
+    }
+
+    static void unload(World world) {
+        AreaDifficultyCache cache = CACHES.get(world.provider.getDimension());
+        if (cache != null && cache.world == world)
+            CACHES.remove(world.provider.getDimension());
+    }
+
+    private static final class Entry {
+        final AreaDifficultyStrategy strategy;
+        final int chunkX;
+        final int chunkZ;
+        final double value;
+        final long expiresAt;
+
+        Entry(AreaDifficultyStrategy strategy, int chunkX, int chunkZ, double value, long expiresAt) {
+            this.strategy = strategy;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        long distanceSq(int otherChunkX, int otherChunkZ) {
+            return AreaDifficultyCache.distanceSq(chunkX, chunkZ, otherChunkX, otherChunkZ);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.world;
+
+import gnu.trove.iterator.TIntIntIterator;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntLongHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityLivingBase;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.SoundCategory;
+import net.minecraft.util.SoundEvent;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.IWorldEventListener;
+import net.minecraft.world.World;
+import net.minecraftforge.event.entity.EntityJoinWorldEvent;
+import net.minecraftforge.event.entity.living.LivingDeathEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.EventPriority;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.silentchaos512.scalinghealth.config.Config;
+import net.silentchaos512.scalinghealth.entity.EntityBlightFire;
+import net.silentchaos512.scalinghealth.event.BlightHandler;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The live blights in a single world, mapped to the entity ID of their blight fire, so a blight's
+ * fire can be found without scanning every entity. Blights are added when they are marked or
+ * join the world, and removed when they die, stop being blights, or leave the world for any
+ * reason (despawning, chunk unloading, changing dimensions, or no longer being tracked by a
+ * client). Leaving is detected with a world event listener, which the world calls for every
+ * entity it removes.
+ * <p>
+ * Blights are also counted per region, for {@link #isRegionFull}. A blight is counted in the
+ * region it was in when it was added, even if it wanders off later.
+ * <p>
+ * Server worlds get one registry per dimension, client worlds share a single one.
+ */
+public final class BlightRegistry {
+    private static final int NO_FIRE = -1;
+
+    private static final TIntObjectHashMap<BlightRegistry> SERVER_REGISTRIES = new TIntObjectHashMap<>();
+    private static BlightRegistry clientRegistry;
+
+    private final World world;
+    // Blight entity ID -> fire entity ID
+    private final TIntIntHashMap fires = new TIntIntHashMap(16, 0.5f, NO_FIRE, NO_FIRE);
+    // Blight entity ID -> region key, and region key -> blight count
+    private final TIntLongHashMap regions = new TIntLongHashMap();
+    private final TLongIntHashMap regionCounts = new TLongIntHashMap();
+    // Region size the counts were made with, they are rebuilt if the config changes
+    private int regionSize = Config.Mob.Blight.regionSize;
+
+    private final Listener listener = new Listener();
+
+    private BlightRegistry(World world) {
+        this.world = world;
+        world.addEventListener(listener);
+    }
+
+    public static BlightRegistry get(World world) {
+        if (world.isRemote) {
+            if (clientRegistry == null || clientRegistry.world != world)
+                clientRegistry = new BlightRegistry(world);
+            return clientRegistry;
+        }
+
+        int dimension = world.provider.getDimension();
+        BlightRegistry registry = SERVER_REGISTRIES.get(dimension);
+        if (registry == null || registry.world != world) {
+            registry = new BlightRegistry(world);
+            SERVER_REGISTRIES.put(dimension, registry);
+        }
+        return registry;
+    }
+
+    public void addBlight(EntityLivingBase blight) {
+        int id = blight.getEntityId();
+        if (!fires.containsKey(id)) {
+            fires.put(id, NO_FIRE);
+            long region = getRegionKey(blight);
+            regions.put(id, region);
+            regionCounts.adjustOrPutValue(region, 1, 1);
+        }
+    }
+
+    /**
+     * Removes the blight, and kills its fire if it has one.
+     */
+    public void removeBlight(EntityLivingBase blight) {
+        EntityBlightFire fire = getFire(blight);
+        remove(blight.getEntityId());
+        if (fire != null)
+            fire.setDead();
+    }
+
+    @Nullable
+    public EntityBlightFire getFire(EntityLivingBase blight) {
+        int fireId = fires.get(blight.getEntityId());
+        if (fireId == NO_FIRE)
+            return null;
+
+        Entity entity = world.getEntityByID(fireId);
+        if (entity instanceof EntityBlightFire && !entity.isDead && ((EntityBlightFire) entity).getParent() == blight)
+            return (EntityBlightFire) entity;
+
+        fires.put(blight.getEntityId(), NO_FIRE);
+        return null;
+    }
+
+    private void remove(int blightId) {
+        if (!fires.containsKey(blightId))
+            return;
+
+        fires.remove(blightId);
+        long region = regions.remove(blightId);
+        int count = regionCounts.get(region) - 1;
+        if (count > 0)
+            regionCounts.put(region, count);
+        else
+            regionCounts.remove(region);
+    }
+
+    private void setFire(EntityLivingBase blight, EntityBlightFire fire) {
+        fires.put(blight.getEntityId(), fire.getEntityId());
+    }
+
+    /**
+     * Gets all blights in the world, dropping any that are no longer loaded.
+     */
+    public List<EntityLivingBase> getBlights() {
+        List<EntityLivingBase> list = new ArrayList<>(fires.size());
+        TIntList stale = null;
+        for (TIntIntIterator iter = fires.iterator(); iter.hasNext(); ) {
+            iter.advance();
+            Entity entity = world.getEntityByID(iter.key());
+            if (entity instanceof EntityLivingBase && !entity.isDead && BlightHandler.isBlight((EntityLivingBase) entity)) {
+                list.add((EntityLivingBase) entity);
+            } else {
+                if (stale == null)
+                    stale = new TIntArrayList();
+                stale.add(iter.key());
+            }
+        }
+        if (stale != null)
+            stale.forEach(id -> {
+                remove(id);
+                return true;
+            });
+        return list;
+    }
+
+    public int size() {
+        return fires.size();
+    }
+
+    /**
+     * Checks if the region (see {@link Config.Mob.Blight#regionSize}) containing the entity has
+     * reached {@link Config.Mob.Blight#maxPerRegion}. Does not count the entity itself.
+     */
+    public boolean isRegionFull(Entity entity) {
+        final int max = Config.Mob.Blight.maxPerRegion;
+        if (max <= 0 || fires.size() < max)
+            return false;
+
+        if (regionSize != Config.Mob.Blight.regionSize)
+            rebuildRegions();
+
+        int count = regionCounts.get(getRegionKey(entity));
+        if (fires.containsKey(entity.getEntityId()) && regions.get(entity.getEntityId()) == getRegionKey(entity))
+            --count;
+        return count >= max;
+    }
+
+    private void rebuildRegions() {
+        List<EntityLivingBase> blights = getBlights();
+        regionSize = Config.Mob.Blight.regionSize;
+        regions.clear();
+        regionCounts.clear();
+        for (EntityLivingBase blight : blights) {
+            long region = getRegionKey(blight);
+            regions.put(blight.getEntityId(), region);
+            regionCounts.adjustOrPutValue(region, 1, 1);
+        }
+    }
+
+    private long getRegionKey(Entity entity) {
+        long regionX = Math.floorDiv(MathHelper.floor(entity.posX) >> 4, regionSize);
+        long regionZ = Math.floorDiv(MathHelper.floor(entity.posZ) >> 4, regionSize);
+        return (regionX << 32) | (regionZ & 0xFFFFFFFFL);
+    }
+
+    public static class EventHandler {
+        @SubscribeEvent(priority = EventPriority.LOWEST)
+        public void onEntityJoinWorld(EntityJoinWorldEvent event) {
+            Entity entity = event.getEntity();
+            if (entity instanceof EntityBlightFire) {
+                // Clients may not know the parent is a blight yet, so register it regardless
+                EntityLivingBase parent = ((EntityBlightFire) entity).getParent();
+                if (parent != null && parent.world == event.getWorld()) {
+                    BlightRegistry registry = get(event.getWorld());
+                    registry.addBlight(parent);
+                    registry.setFire(parent, (EntityBlightFire) entity);
+                }
+            } else if (entity instanceof EntityLivingBase && BlightHandler.isBlight((EntityLivingBase) entity)) {
+                get(event.getWorld()).addBlight((EntityLivingBase) entity);
+            }
+        }
+
+        @SubscribeEvent(priority = EventPriority.LOWEST)
+        public void onLivingDeath(LivingDeathEvent event) {
+            EntityLivingBase entity = event.getEntityLiving();
+            if (BlightHandler.isBlight(entity))
+                get(entity.world).removeBlight(entity);
+        }
+
+        @SubscribeEvent
+        public void onWorldUnload(WorldEvent.Unload event) {
+            World world = event.getWorld();
+            if (world.isRemote) {
+                if (clientRegistry != null && clientRegistry.world == world) {
+                    world.removeEventListener(clientRegistry.listener);
+                    clientRegistry = null;
+                }
+            } else {
+                BlightRegistry registry = SERVER_REGISTRIES.get(world.provider.getDimension());
+                if (registry != null && registry.world == world) {
+                    world.removeEventListener(registry.listener);
+                    SERVER_REGISTRIES.remove(world.provider.getDimension());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops blights as the world removes them. Everything else is ignored.
+     */
+    private final class Listener implements IWorldEventListener {
+        @Override
+        public void onEntityRemoved(Entity entity) {
+            if (entity instanceof EntityLivingBase)
+                remove(entity.getEntityId());
+        }
+
+        @Override
+        public void onEntityAdded(Entity entity) {
+        }
+
+        @Override
+        public void notifyBlockUpdate(World world, BlockPos pos, IBlockState oldState, IBlockState newState, int flags) {
+        }
+
+        @Override
+        public void notifyLightSet(BlockPos pos) {
+        }
+
+        @Override
+        public void markBlockRangeForRenderUpdate(int x1, int y1, int z1, int x2, int y2, int z2) {
+        }
+
+        @Override
+        public void playSoundToAllNearExcept(@Nullable EntityPlayer player, SoundEvent sound, SoundCategory category,
+                                             double x, double y, double z, float volume, float pitch) {
+        }
+
+        @Override
+        public void playRecord(SoundEvent sound, BlockPos pos) {
+        }
+
+        @Override
+        public void spawnParticle(int particleId, boolean ignoreRange, double x, double y, double z,
+                                  double xSpeed, double ySpeed, double zSpeed, int... parameters) {
+        }
+
+        @Override
+        public void spawnParticle(int id, boolean ignoreRange, boolean minimiseParticleLevel, double x, double y, double z,
+                                  double xSpeed, double ySpeed, double zSpeed, int... parameters) {
+        }
+
+        @Override
+        public void broadcastSound(int soundId, BlockPos pos, int data) {
+        }
+
+        @Override
+        public void playEvent(EntityPlayer player, int type, BlockPos pos, int data) {
+        }
+
+        @Override
+        public void sendBlockBreakProgress(int breakerId, BlockPos pos, int progress) {
+        }
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.world;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.common.gameevent.TickEvent.WorldTickEvent;
+import net.silentchaos512.scalinghealth.ScalingHealth;
+import net.silentchaos512.scalinghealth.api.AreaDifficultyStrategy;
+import net.silentchaos512.scalinghealth.api.AreaDifficultyStrategy.Input;
+import net.silentchaos512.scalinghealth.config.Config;
+import net.silentchaos512.scalinghealth.lib.AreaDifficultyEvaluator;
+import net.silentchaos512.scalinghealth.lib.AreaDifficultyStrategies;
+import net.silentchaos512.scalinghealth.lib.SimpleExpression;
+import net.silentchaos512.scalinghealth.utils.SHPlayerDataHandler;
+import net.silentchaos512.scalinghealth.utils.SHPlayerDataHandler.PlayerData;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An immutable copy of everything needed to calculate difficulty in one dimension, taken at the
+ * end of each server world tick. Unlike the live methods in
+ * {@link net.silentchaos512.scalinghealth.api.ScalingHealthAPI}, snapshots can be read from any
+ * thread without locking. Values may be up to a tick old.
+ */
+public final class DifficultySnapshot {
+    private static final Map<Integer, Holder> HOLDERS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Query> QUERIES = ThreadLocal.withInitial(Query::new);
+    /**
+     * Bulk queries at least this large are evaluated in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 4096;
+    private static final int PARALLEL_CHUNK_SIZE = 1024;
+
+    private final int dimension;
+    private final long worldTime;
+    private final boolean difficultyEnabled;
+    private final AreaDifficultyStrategy strategy;
+    private final int searchRadius;
+    private final float minValue;
+    private final float maxValue;
+    private final float groupAreaBonus;
+    @Nullable
+    private final SimpleExpression dimensionFactor;
+    private final int spawnX;
+    private final int spawnZ;
+    private final double worldDifficulty;
+
+    private final int playerCount;
+    // x, y, z for each player
+    private final double[] playerPositions;
+    private final double[] playerDifficulties;
+    // Most significant bits, then least significant bits for each player
+    private final long[] playerIds;
+
+    private DifficultySnapshot(World world) {
+        this.dimension = world.provider.getDimension();
+        this.worldTime = world.getTotalWorldTime();
+        this.difficultyEnabled = world.getGameRules().getBoolean(ScalingHealth.GAME_RULE_DIFFICULTY);
+        this.strategy = AreaDifficultyStrategies.getActive();
+        this.searchRadius = Config.Difficulty.searchRadius;
+        this.minValue = Config.Difficulty.minValue;
+        this.maxValue = Config.Difficulty.maxValue;
+        this.groupAreaBonus = Config.Difficulty.groupAreaBonus;
+        this.dimensionFactor = Config.Difficulty.DIMENSION_VALUE_FACTOR.get(dimension);
+
+        // Same as the evaluator, so dimension spawn point overrides are respected
+        BlockPos spawn = world.getSpawnPoint();
+        this.spawnX = spawn.getX();
+        this.spawnZ = spawn.getZ();
+        ScalingHealthSavedData data = ScalingHealthSavedData.get(world);
+        //noinspection ConstantConditions
+        this.worldDifficulty = data != null ? data.difficulty : 0;
+
+        int count = world.playerEntities.size();
+        this.playerCount = count;
+        this.playerPositions = new double[3 * count];
+        this.playerDifficulties = new double[count];
+        this.playerIds = new long[2 * count];
+        for (int i = 0; i < count; ++i) {
+            EntityPlayer player = world.playerEntities.get(i);
+            playerPositions[3 * i] = player.posX;
+            playerPositions[3 * i + 1] = player.posY;
+            playerPositions[3 * i + 2] = player.posZ;
+            PlayerData playerData = SHPlayerDataHandler.get(player);
+            playerDifficulties[i] = playerData != null ? playerData.getDifficulty() : Double.NaN;
+            UUID uuid = player.getUniqueID();
+            playerIds[2 * i] = uuid.getMostSignificantBits();
+            playerIds[2 * i + 1] = uuid.getLeastSignificantBits();
+        }
+    }
+
+    /**
+     * Gets the latest snapshot for the dimension. Safe to call from any thread.
+     *
+     * @return The snapshot, or null if the dimension is not loaded or has not ticked yet
+     */
+    @Nullable
+    public static DifficultySnapshot get(int dimension) {
+        Holder holder = HOLDERS.get(dimension);
+        return holder != null ? holder.snapshot : null;
+    }
+
+    private static void publish(World world) {
+        HOLDERS.computeIfAbsent(world.provider.getDimension(), k -> new Holder()).snapshot = new DifficultySnapshot(world);
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return The total world time when the snapshot was taken
+     */
+    public long getWorldTime() {
+        return worldTime;
+    }
+
+    public double getWorldDifficulty() {
+        return worldDifficulty;
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    public double getPlayerX(int index) {
+        return playerPositions[3 * index];
+    }
+
+    public double getPlayerY(int index) {
+        return playerPositions[3 * index + 1];
+    }
+
+    public double getPlayerZ(int index) {
+        return playerPositions[3 * index + 2];
+    }
+
+    /**
+     * @return The player's difficulty, or {@link Double#NaN} if the player has no data.
+     */
+    public double getPlayerDifficulty(int index) {
+        return playerDifficulties[index];
+    }
+
+    /**
+     * @return The player's difficulty, or {@link Double#NaN} if the player is not in this
+     * dimension or has no data.
+     */
+    public double getPlayerDifficulty(UUID playerId) {
+        long most = playerId.getMostSignificantBits();
+        long least = playerId.getLeastSignificantBits();
+        for (int i = 0; i < playerCount; ++i)
+            if (playerIds[2 * i] == most && playerIds[2 * i + 1] == least)
+                return playerDifficulties[i];
+        return Double.NaN;
+    }
+
+    /**
+     * Gets the area difficulty for a position with the configured area mode, the same way
+     * {@link net.silentchaos512.scalinghealth.api.ScalingHealthAPI#getAreaDifficulty} does.
+     */
+    public double getAreaDifficulty(int x, int y, int z) {
+        return getAreaDifficulty(x, y, z, true, true);
+    }
+
+    public double getAreaDifficulty(int x, int y, int z, boolean addGroupBonus, boolean clampValue) {
+        if (!difficultyEnabled)
+            return 0.0;
+
+        Query query = QUERIES.get();
+        query.set(this, x, y, z);
+
+        boolean needsPlayers = strategy.getInputs().contains(Input.PLAYERS);
+        if (needsPlayers || (addGroupBonus && groupAreaBonus != 0))
+            query.findPlayers();
+        if (needsPlayers && query.count == 0)
+            return 0;
+
+        double ret = strategy.getDifficulty(query);
+        return AreaDifficultyEvaluator.applyModifiers(ret, query.count, addGroupBonus, clampValue,
+                minValue, maxValue, groupAreaBonus, dimensionFactor);
+    }
+
+    /**
+     * Gets the area difficulty for many positions. Large inputs are split across the common
+     * fork-join pool.
+     *
+     * @param positions Positions packed with {@link net.minecraft.util.math.BlockPos#toLong()}
+     * @param out       Receives the area difficulty of each position
+     */
+    public void getAreaDifficulty(long[] positions, double[] out) {
+        if (out.length < positions.length)
+            throw new IllegalArgumentException("Output array is smaller than position array");
+
+        if (positions.length >= PARALLEL_THRESHOLD)
+            ForkJoinPool.commonPool().invoke(new BulkTask(this, positions, out, 0, positions.length));
+        else
+            getAreaDifficulty(positions, out, 0, positions.length);
+    }
+
+    private void getAreaDifficulty(long[] positions, double[] out, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            long packed = positions[i];
+            out[i] = getAreaDifficulty(AreaDifficultyEvaluator.unpackX(packed), AreaDifficultyEvaluator.unpackY(packed),
+                    AreaDifficultyEvaluator.unpackZ(packed), true, true);
+        }
+    }
+
+    private static final class BulkTask extends RecursiveAction {
+        private final DifficultySnapshot snapshot;
+        private final long[] positions;
+        private final double[] out;
+        private final int start;
+        private final int end;
+
+        BulkTask(DifficultySnapshot snapshot, long[] positions, double[] out, int start, int end) {
+            this.snapshot = snapshot;
+            this.positions = positions;
+            this.out = out;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_CHUNK_SIZE) {
+                snapshot.getAreaDifficulty(positions, out, start, end);
+            } else {
+                int mid = (start + end) >>> 1;
+                invokeAll(new BulkTask(snapshot, positions, out, start, mid),
+                        new BulkTask(snapshot, positions, out, mid, end));
+            }
+        }
+    }
+
+    private static final class Holder {
+        volatile DifficultySnapshot snapshot;
+    }
+
+    /**
+     * Per-thread strategy context over a snapshot. Holds the indices of players in range.
+     */
+    private static final class Query implements AreaDifficultyStrategy.Context {
+        private DifficultySnapshot snapshot;
+        private int x;
+        private int y;
+        private int z;
+        private int count;
+        private int[] players = new int[16];
+
+        void set(DifficultySnapshot snapshot, int x, int y, int z) {
+            this.snapshot = snapshot;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.count = 0;
+        }
+
+        void findPlayers() {
+            final int radius = snapshot.searchRadius;
+            final double radiusSquared = (double) radius * radius;
+            final double[] positions = snapshot.playerPositions;
+            if (players.length < snapshot.playerCount)
+                players = Arrays.copyOf(players, Math.max(snapshot.playerCount, players.length * 2));
+
+            for (int i = 0; i < snapshot.playerCount; ++i) {
+                double dx = positions[3 * i] - x;
+                double dy = positions[3 * i + 1] - y;
+                double dz = positions[3 * i + 2] - z;
+                if (radius <= 0 || dx * dx + dy * dy + dz * dz <= radiusSquared)
+                    players[count++] = i;
+            }
+        }
+
+        @Override
+        public int getX() {
+            return x;
+        }
+
+        @Override
+        public int getY() {
+            return y;
+        }
+
+        @Override
+        public int getZ() {
+            return z;
+        }
+
+        @Override
+        public int getSearchRadius() {
+            return snapshot.searchRadius <= 0 ? Integer.MAX_VALUE : snapshot.searchRadius;
+        }
+
+        @Override
+        public int getPlayerCount() {
+            return count;
+        }
+
+        @Override
+        public double getPlayerX(int index) {
+            return snapshot.getPlayerX(players[index]);
+        }
+
+        @Override
+        public double getPlayerZ(int index) {
+            return snapshot.getPlayerZ(players[index]);
+        }
+
+        @Override
+        public double getPlayerDifficulty(int index) {
+            return snapshot.getPlayerDifficulty(players[index]);
+        }
+
+        @Override
+        public int getSpawnX() {
+            return snapshot.spawnX;
+        }
+
+        @Override
+        public int getSpawnZ() {
+            return snapshot.spawnZ;
+        }
+
+        @Override
+        public double getWorldDifficulty() {
+            return snapshot.worldDifficulty;
+        }
+    }
+
+    public static class EventHandler {
+        @SubscribeEvent
+        public void onWorldTick(WorldTickEvent event) {
+            if (event.phase == Phase.END && !event.world.isRemote) {
+                publish(event.world);
+            }
+        }
+
+        @SubscribeEvent
+        public void onWorldUnload(WorldEvent.Unload event) {
+            if (!event.getWorld().isRemote) {
+                HOLDERS.remove(event.getWorld().provider.getDimension());
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Scaling Health
+ * Copyright (C) 2018 SilentChaos512
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 3
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.silentchaos512.scalinghealth.world;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+import net.minecraftforge.event.entity.EntityJoinWorldEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerChangedDimensionEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.common.gameevent.TickEvent.PlayerTickEvent;
+import net.silentchaos512.scalinghealth.config.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A uniform grid of players for a single dimension, used to find players near a position without
+ * scanning every player in the world. Cells are at least as wide as the search radius, so a radius
+ * query never needs to look at more than a 3x3 block of cells. Players are moved between cells as
+ * they tick, and query results go into a reusable buffer (see {@link #query} and
+ * {@link #getPlayer}) so lookups do not allocate.
+ * <p>
+ * Server worlds get one index per dimension. Client worlds only hold a few players, so their index
+ * just scans the world's player list.
+ */
+public final class PlayerSpatialIndex {
+    private static final int MIN_CELL_SIZE = 64;
+
+    private static final TIntObjectHashMap<PlayerSpatialIndex> SERVER_INDICES = new TIntObjectHashMap<>();
+    private static PlayerSpatialIndex clientIndex;
+
+    private final World world;
+    private final TIntObjectHashMap<Entry> entries = new TIntObjectHashMap<>();
+    private final TLongObjectHashMap<List<Entry>> cells = new TLongObjectHashMap<>();
+    private int cellSize;
+
+    private EntityPlayer[] results = new EntityPlayer[16];
+    private int resultCount;
+
+    private PlayerSpatialIndex(World world) {
+        this.world = world;
+        this.cellSize = getCellSizeFromConfig();
+    }
+
+    public static PlayerSpatialIndex get(World world) {
+        if (world.isRemote) {
+            if (clientIndex == null || clientIndex.world != world)
+                clientIndex = new PlayerSpatialIndex(world);
+            return clientIndex;
+        }
+
+        int dimension = world.provider.getDimension();
+        PlayerSpatialIndex index = SERVER_INDICES.get(dimension);
+        if (index == null || index.world != world) {
+            index = new PlayerSpatialIndex(world);
+            SERVER_INDICES.put(dimension, index);
+            for (EntityPlayer player : world.playerEntities)
+                index.update(player);
+        }
+        return index;
+    }
+
+    private static int getCellSizeFromConfig() {
+        return Math.max(MIN_CELL_SIZE, Config.Difficulty.searchRadius);
+    }
+
+    /**
+     * Finds all players within {@code radius} blocks of the given position. Results can be read
+     * with {@link #getPlayer(int)} until the next query on this index.
+     *
+     * @param radius The search radius. Zero or less means unlimited range.
+     * @return The number of players found.
+     */
+    public int query(double x, double y, double z, int radius) {
+        resultCount = 0;
+
+        if (radius <= 0) {
+            List<EntityPlayer> players = world.playerEntities;
+            //noinspection ForLoopReplaceableByForEach -- avoid iterator allocation
+            for (int i = 0; i < players.size(); ++i)
+                addResult(players.get(i));
+            return resultCount;
+        }
+
+        final double radiusSquared = (double) radius * radius;
+
+        if (world.isRemote) {
+            List<EntityPlayer> players = world.playerEntities;
+            //noinspection ForLoopReplaceableByForEach
+            for (int i = 0; i < players.size(); ++i) {
+                EntityPlayer player = players.get(i);
+                if (player.getDistanceSq(x, y, z) <= radiusSquared)
+                    addResult(player);
+            }
+            return resultCount;
+        }
+
+        if (cellSize != getCellSizeFromConfig())
+            rebuild();
+
+        int minCellX = MathHelper.floor((x - radius) / cellSize);
+        int maxCellX = MathHelper.floor((x + radius) / cellSize);
+        int minCellZ = MathHelper.floor((z - radius) / cellSize);
+        int maxCellZ = MathHelper.floor((z + radius) / cellSize);
+
+        for (int cellX = minCellX; cellX <= maxCellX; ++cellX) {
+            for (int cellZ = minCellZ; cellZ <= maxCellZ; ++cellZ) {
+                List<Entry> cell = cells.get(ChunkPos.asLong(cellX, cellZ));
+                if (cell == null)
+                    continue;
+
+                //noinspection ForLoopReplaceableByForEach
+                for (int i = 0; i < cell.size(); ++i) {
+                    EntityPlayer player = cell.get(i).player;
+                    if (player.world == world && player.getDistanceSq(x, y, z) <= radiusSquared)
+                        addResult(player);
+                }
+            }
+        }
+
+        return resultCount;
+    }
+
+    /**
+     * Gets a player found by the last call to {@link #query}.
+     *
+     * @param index Must be less than the value returned by the last query.
+     */
+    public EntityPlayer getPlayer(int index) {
+        if (index < 0 || index >= resultCount)
+            throw new IndexOutOfBoundsException("index must be between 0 and " + resultCount);
+        return results[index];
+    }
+
+    private void addResult(EntityPlayer player) {
+        if (resultCount == results.length)
+            results = Arrays.copyOf(results, results.length * 2);
+        results[resultCount++] = player;
+    }
+
+    void update(EntityPlayer player) {
+        if (world.isRemote)
+            return;
+
+        int cellX = MathHelper.floor(player.posX / cellSize);
+        int cellZ = MathHelper.floor(player.posZ / cellSize);
+        int chunkX = MathHelper.floor(player.posX) >> 4;
+        int chunkZ = MathHelper.floor(player.posZ) >> 4;
+
+        Entry entry = entries.get(player.getEntityId());
+        if (entry == null) {
+            entry = new Entry(player, cellX, cellZ, chunkX, chunkZ);
+            entries.put(player.getEntityId(), entry);
+            getOrCreateCell(cellX, cellZ).add(entry);
+            AreaDifficultyCache.get(world).invalidateAround(player);
+            return;
+        }
+
+        // Respawning creates a new player entity with the same ID
+        entry.player = player;
+
+        if (entry.chunkX != chunkX || entry.chunkZ != chunkZ) {
+            AreaDifficultyCache.get(world).onPlayerChangedChunk(entry.chunkX, entry.chunkZ, chunkX, chunkZ);
+            entry.chunkX = chunkX;
+            entry.chunkZ = chunkZ;
+        }
+
+        if (entry.cellX != cellX || entry.cellZ != cellZ) {
+            removeFromCell(entry);
+            entry.cellX = cellX;
+            entry.cellZ = cellZ;
+            getOrCreateCell(cellX, cellZ).add(entry);
+        }
+    }
+
+    void remove(EntityPlayer player) {
+        Entry entry = entries.remove(player.getEntityId());
+        if (entry != null) {
+            removeFromCell(entry);
+            AreaDifficultyCache.get(world).invalidateAround(player);
+        }
+    }
+
+    private void rebuild() {
+        entries.clear();
+        cells.clear();
+        cellSize = getCellSizeFromConfig();
+        for (EntityPlayer player : world.playerEntities)
+            update(player);
+    }
+
+    private List<Entry> getOrCreateCell(int cellX, int cellZ) {
+        long key = ChunkPos.asLong(cellX, cellZ);
+        List<Entry> cell = cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<>(4);
+            cells.put(key, cell);
+        }
+        return cell;
+    }
+
+    private void removeFromCell(Entry entry) {
+        long key = ChunkPos.asLong(entry.cellX, entry.cellZ);
+        List<Entry> cell = cells.get(key);
+        if (cell != null) {
+            cell.remove(entry);
+            if (cell.isEmpty())
+                cells.remove(key);
+        }
+    }
+
+    private static final class Entry {
+        EntityPlayer player;
+        int cellX;
+        int cellZ;
+        int chunkX;
+        int chunkZ;
+
+        Entry(EntityPlayer player, int cellX, int cellZ, int chunkX, int chunkZ) {
+            this.player = player;
+            this.cellX = cellX;
+            this.cellZ = cellZ;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+    }
+
+    public static class EventHandler {
+        @SubscribeEvent
+        public void onPlayerTick(PlayerTickEvent event) {
+            if (event.phase == Phase.END && !event.player.world.isRemote) {
+                get(event.player.world).update(event.player);
+            }
+        }
+
+        @SubscribeEvent
+        public void onEntityJoinWorld(EntityJoinWorldEvent event) {
+            if (event.getEntity() instanceof EntityPlayer && !event.getWorld().isRemote) {
+                get(event.getWorld()).update((EntityPlayer) event.getEntity());
+            }
+        }
+
+        @SubscribeEvent
+        public void onPlayerChangedDimension(PlayerChangedDimensionEvent event) {
+            PlayerSpatialIndex index = SERVER_INDICES.get(event.fromDim);
+            if (index != null) {
+                index.remove(event.player);
+            }
+        }
+
+        @SubscribeEvent
+        public void onPlayerLogout(PlayerLoggedOutEvent event) {
+            if (!event.player.world.isRemote) {
+                get(event.player.world).remove(event.player);
+            }
+        }
+
+        @SubscribeEvent
+        public void onWorldUnload(WorldEvent.Unload event) {
+            World world = event.getWorld();
+            if (world.isRemote) {
+                if (clientIndex != null && clientIndex.world == world)
+                    clientIndex = null;
+            } else {
+                PlayerSpatialIndex index = SERVER_INDICES.get(world.provider.getDimension());
+                if (index != null && index.world == world)
+                    SERVER_INDICES.remove(world.provider.getDimension());
+                AreaDifficultyCache.unload(world);
+            }
+        }
+    }
+}